@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.swing.text.BadLocationException;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.netbeans.editor.BaseDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the {@link Utils} methods called for every keystroke or edit,
+ * on documents of 1 KB to 10 MB. Run with {@code ant bench}, the allocation
+ * rate is reported by the {@code gc} profiler.
+ *
+ * @author ranSprd
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private static final String[] METHOD = {
+        "    public void method%d(int value) {\n",
+        "        String foo = Integer.toString(value);\n",
+        "    }\n",
+    };
+    // column of "foo" in the second line of a method
+    private static final int FOO_COLUMN = 15;
+    private static final int EDITS = 100;
+    private static final int SAMPLES = 1024;
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    public int size;
+
+    private BaseDocument doc;
+    private int methods;
+    private final int[] offsets = new int[SAMPLES];
+    private final Position[] positions = new Position[SAMPLES];
+    private int sample;
+    private String removedText;
+    private int braceOffset;
+    private Position braceLineEnd;
+    private List<TextEdit> toBar;
+    private List<TextEdit> toFoo;
+    private boolean foo;
+
+    @Setup(Level.Trial)
+    public void createDocument() throws BadLocationException {
+        StringBuilder text = new StringBuilder("public class Generated {\n");
+
+        while (text.length() < size) {
+            text.append(String.format(METHOD[0], methods++))
+                .append(METHOD[1])
+                .append(METHOD[2]);
+        }
+        text.append("}\n");
+
+        doc = new BaseDocument(false, "text/plain");
+        doc.insertString(0, text.toString(), null);
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            offsets[i] = random.nextInt(doc.getLength());
+            positions[i] = Utils.createPosition(doc, offsets[i]);
+        }
+
+        removedText = text.substring(0, Math.min(text.length(), 4096));
+
+        // end of the first method's declaration line, just after the brace
+        braceOffset = text.indexOf("{\n", text.indexOf("method")) + 1;
+        braceLineEnd = Utils.createPosition(doc, braceOffset);
+
+        toBar = renameEdits("foo", "bar");
+        toFoo = renameEdits("bar", "foo");
+        foo = true;
+    }
+
+    /**
+     * replace the variable of methods spread over the document
+     */
+    private List<TextEdit> renameEdits(String from, String to) {
+        List<TextEdit> edits = new ArrayList<>();
+        int step = Math.max(1, methods / EDITS);
+
+        for (int m = 0; m < methods; m += step) {
+            // the class declaration, then three lines per method
+            int line = 1 + 3 * m + 1;
+            edits.add(new TextEdit(new Range(new Position(line, FOO_COLUMN), new Position(line, FOO_COLUMN + from.length())), to));
+        }
+
+        return edits;
+    }
+
+    private int nextSample() {
+        sample = (sample + 1) & (SAMPLES - 1);
+        return sample;
+    }
+
+    @Benchmark
+    public Position createPosition() throws BadLocationException {
+        return Utils.createPosition(doc, offsets[nextSample()]);
+    }
+
+    @Benchmark
+    public int getOffset() {
+        return Utils.getOffset(doc, positions[nextSample()]);
+    }
+
+    @Benchmark
+    public Position computeEndPositionForRemovedText() {
+        return Utils.computeEndPositionForRemovedText(positions[nextSample()], removedText);
+    }
+
+    @Benchmark
+    public List<TextEdit> computeDefaultOnTypeIndent() {
+        return Utils.computeDefaultOnTypeIndent(doc, braceOffset, braceLineEnd, "\n");
+    }
+
+    /**
+     * the edits rename the variables back and forth, the document keeps its size
+     */
+    @Benchmark
+    public int applyEditsNoLock() {
+        List<TextEdit> edits = foo ? toBar : toFoo;
+
+        foo = !foo;
+        doc.runAtomic(() -> Utils.applyEditsNoLock(doc, edits));
+        return doc.getLength();
+    }
+}
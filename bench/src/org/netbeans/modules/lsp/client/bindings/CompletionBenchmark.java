@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.text.BadLocationException;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.netbeans.editor.BaseDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation of a completion query: the items of a server response are
+ * created by {@link CompletionProviderImpl}'s item factory, directly or after
+ * the cached result was refined locally. Run with {@code ant bench}, the
+ * allocation per query is reported as {@code gc.alloc.rate.norm}.
+ *
+ * @author ranSprd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompletionBenchmark {
+
+    private static final String PREFIX = "ge";
+    private static final CompletionItemKind[] KINDS = {
+        CompletionItemKind.Method, CompletionItemKind.Field, CompletionItemKind.Class, CompletionItemKind.Variable
+    };
+
+    @Param({"5000"})
+    public int items;
+
+    private final CompletionProviderImpl provider = new CompletionProviderImpl();
+    private BaseDocument doc;
+    private List<CompletionItem> response;
+    private CompletionResultCache cache;
+    private int prefixStart;
+
+    @Setup(Level.Trial)
+    public void createResponse() throws BadLocationException {
+        doc = new BaseDocument(false, "text/plain");
+        String text = "class Generated { void m() { " + PREFIX + " } }\n";
+
+        doc.insertString(0, text, null);
+        prefixStart = text.indexOf(PREFIX);
+
+        response = new ArrayList<>(items);
+
+        for (int i = 0; i < items; i++) {
+            // half of the items match the prefix
+            CompletionItem item = new CompletionItem((i % 2 == 0 ? "getValue" : "setValue") + i);
+            item.setKind(KINDS[i % KINDS.length]);
+            item.setDetail("java.lang.String value" + i + "()");
+            item.setSortText(String.format("%05d", i));
+            response.add(item);
+        }
+
+        cache = CompletionResultCache.forDocument(doc);
+    }
+
+    private List<org.netbeans.spi.editor.completion.CompletionItem> createItems(List<CompletionItem> completionItems) {
+        int caretOffset = prefixStart + PREFIX.length();
+        List<org.netbeans.spi.editor.completion.CompletionItem> result = new ArrayList<>(completionItems.size());
+
+        for (CompletionItem completionItem : completionItems) {
+            result.add(provider.createItem(null, doc, caretOffset, null, completionItem));
+        }
+
+        return result;
+    }
+
+    /**
+     * all items of the response are created, as for a query sent to the server
+     */
+    @Benchmark
+    public List<org.netbeans.spi.editor.completion.CompletionItem> serverQuery() {
+        return createItems(response);
+    }
+
+    /**
+     * the cached response is filtered by the prefix, as for a query refined locally
+     */
+    @Benchmark
+    public List<org.netbeans.spi.editor.completion.CompletionItem> refinedQuery() {
+        cache.put(prefixStart, PREFIX, response, false);
+        return createItems(cache.get(prefixStart, PREFIX));
+    }
+}
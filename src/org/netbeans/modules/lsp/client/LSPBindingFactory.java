@@ -29,14 +29,15 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -65,8 +66,10 @@ import org.netbeans.api.editor.mimelookup.MimeLookup;
 import org.netbeans.api.progress.BaseProgressUtils;
 import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ui.OpenProjects;
 import org.netbeans.modules.lsp.client.bindings.LanguageClientImpl;
 import org.netbeans.modules.lsp.client.bindings.TextDocumentSyncServerCapabilityHandler;
+import org.netbeans.modules.lsp.client.log.MessageTracer;
 import org.netbeans.modules.lsp.client.options.MimeTypeInfo;
 import org.netbeans.modules.lsp.client.spi.LSPClientInfo;
 import org.netbeans.modules.lsp.client.spi.LanguageServerProvider;
@@ -93,15 +96,24 @@ public class LSPBindingFactory {
     private static final int LSP_KEEP_ALIVE_MINUTES = 10;
     private static final Logger LOG = Logger.getLogger(LSPBindingFactory.class.getName());
     
-    private static final Map<LSPBindings,Long> lspKeepAlive = new IdentityHashMap<>();
+    // LSPBindings doesn't override equals/hashCode, the map has identity semantics
+    private static final Map<LSPBindings,Long> lspKeepAlive = new ConcurrentHashMap<>();
     private static final Map<URI, Map<String, WeakReference<LSPBindings>>> project2MimeType2Server = new HashMap<>();
-    private static final Map<FileObject, Map<String, LSPBindings>> workspace2Extension2Server = new HashMap<>();
+    private static final Map<FileObject, Map<String, LSPBindings>> workspace2Extension2Server = new ConcurrentHashMap<>();
+    private static final Map<URI, Map<String, CompletableFuture<LSPBindings>>> project2MimeType2Startup = new HashMap<>();
+    private static final Map<URI, Set<String>> project2MimeType2Unavailable = new HashMap<>();
+    private static final LSPRoutingIndex ROUTING_INDEX = new LSPRoutingIndex();
     
     private static final RequestProcessor WORKER = new RequestProcessor(LanguageClientImpl.class.getName(), 1, false, true);
+    // servers for different projects/MIME types are started in parallel, the thread is only blocked while spawning the process
+    private static final RequestProcessor STARTUP = new RequestProcessor(LSPBindingFactory.class.getName() + "-startup", 4, false, false);
     
     private static final ChangeSupport ideChangeSupport = new ChangeSupport(LSPBindingFactory.class);
 
     private static final LSPClientInfo CLIENT_INFO = new LSPClientInfo();
+
+    // servers supporting workspace folders are shared by all projects
+    private static final boolean SHARE_SERVERS = Boolean.getBoolean("org.netbeans.modules.lsp.client.shareServers");
     
 
     static {
@@ -131,49 +143,155 @@ public class LSPBindingFactory {
             Math.max(LSP_KEEP_ALIVE_MINUTES / 2, 1),
             Math.max(LSP_KEEP_ALIVE_MINUTES / 2, 1),
             TimeUnit.MINUTES);
+
+        // the owner of files may change with opened/closed projects
+        OpenProjects.getDefault().addPropertyChangeListener(evt -> {
+            if (OpenProjects.PROPERTY_OPEN_PROJECTS.equals(evt.getPropertyName())) {
+                ROUTING_INDEX.invalidate();
+                if (SHARE_SERVERS && evt.getOldValue() instanceof Project[] && evt.getNewValue() instanceof Project[]) {
+                    Set<Project> closed = new HashSet<>(Arrays.asList((Project[]) evt.getOldValue()));
+                    closed.removeAll(Arrays.asList((Project[]) evt.getNewValue()));
+                    if (!closed.isEmpty()) {
+                        WORKER.post(() -> projectsClosed(closed));
+                    }
+                }
+            }
+        });
     }
     
     
+    private static void bindingsChanged() {
+        ROUTING_INDEX.invalidate();
+        WORKER.post(() -> ideChangeSupport.fireChange());
+    }
+    
     public static void addChangeListener(ChangeListener l) {
         ideChangeSupport.addChangeListener(WeakListeners.change(l, ideChangeSupport));
     }
     
 
-    public static synchronized LSPBindings getBindingForFile(FileObject file) {
-        for (Map.Entry<FileObject, Map<String, LSPBindings>> e : workspace2Extension2Server.entrySet()) {
-            if (FileUtil.isParentOf(e.getKey(), file)) {
-                LSPBindings bindings = e.getValue().get(file.getExt());
+    /**
+     * Find the server responsible for the given file. The lookup itself doesn't
+     * take a lock, already resolved files are answered from the routing index.
+     * A server which is not running yet is started in background, use
+     * {@link #getBindingForFileAsync(org.openide.filesystems.FileObject) } to wait for it.
+     *
+     * @param file
+     * @return LSP server binding or null, if there is no (running) server for the file
+     */
+    public static LSPBindings getBindingForFile(FileObject file) {
+        int generation = ROUTING_INDEX.generation();
+        LSPRoutingIndex.Route route = ROUTING_INDEX.getRoute(file);
+
+        if (route != null) {
+            if (!route.hasServer()) {
+                return null;
+            }
 
-                if (bindings != null) {
-                    return bindings;
-                }
+            LSPBindings bindings = route.getBindings();
 
-                break;
+            if (bindings != null && (route.isWorkspace() || bindings.isAlive())) {
+                if (!route.isWorkspace()) {
+                    lspKeepAlive.put(bindings, System.currentTimeMillis());
+                }
+                return bindings;
             }
         }
 
-        String mimeType = FileUtil.getMIMEType(file);
+        LSPBindings workspaceBindings = ROUTING_INDEX.findWorkspaceBindings(file);
+
+        if (workspaceBindings != null) {
+            ROUTING_INDEX.putRoute(file, LSPRoutingIndex.Route.workspace(file, workspaceBindings), generation);
+            return workspaceBindings;
+        }
+
+        String mimeType = route != null ? route.getMimeType() : FileUtil.getMIMEType(file);
 
         if (mimeType == null) {
+            ROUTING_INDEX.putRoute(file, LSPRoutingIndex.Route.project(file, null, null, null), generation);
             return null;
         }
 
+        Project project = route != null ? route.getProject() : FileOwnerQuery.getOwner(file);
+        CompletableFuture<LSPBindings> startup = getBindingsImpl(project, file, mimeType);
+
+        if (!startup.isDone()) {
+            // the server is still starting, don't wait for it - the routing
+            // index is invalidated and listeners are notified when it is ready
+            return null;
+        }
+
+        LSPBindings bindings = startup.getNow(null);
+
+        ROUTING_INDEX.putRoute(file, LSPRoutingIndex.Route.project(file, mimeType, project, bindings), generation);
+
+        return bindings;
+    }
+    
+    /**
+     * @return time of the last access to the given server, null if it is not kept alive
+     */
+    static Long getLastAccessTime(LSPBindings bindings) {
+        return lspKeepAlive.get(bindings);
+    }
+
+    /**
+     * @return index used to route files to their servers
+     */
+    public static LSPRoutingIndex getRoutingIndex() {
+        return ROUTING_INDEX;
+    }
+    
+    /**
+     * Forget all cached file to server assignments, e.g. because the MIME type
+     * configuration was changed.
+     */
+    public static void invalidateRouting() {
+        synchronized (LSPBindingFactory.class) {
+            project2MimeType2Unavailable.clear();
+        }
+        ROUTING_INDEX.invalidate();
+    }
+    
+    
+    /**
+     * Find the server responsible for the given file, start it if necessary.
+     * Unlike {@link #getBindingForFile(org.openide.filesystems.FileObject) }
+     * the returned future completes when a starting server is initialized.
+     *
+     * @param file
+     * @return future with the LSP server binding, completes with null if there is no server for the file
+     */
+    public static CompletableFuture<LSPBindings> getBindingForFileAsync(FileObject file) {
+        LSPBindings bindings = getBindingForFile(file);
+
+        if (bindings != null) {
+            return CompletableFuture.completedFuture(bindings);
+        }
+
+        String mimeType = FileUtil.getMIMEType(file);
+
+        if (mimeType == null || ROUTING_INDEX.findWorkspaceBindings(file) != null) {
+            return CompletableFuture.completedFuture(bindings);
+        }
+
         return getBindingsImpl(FileOwnerQuery.getOwner(file), file, mimeType);
     }
     
     
     /**
      * 
-     * connects/start a new LSP server - call will block until initializiation is finished
+     * connects/start a new LSP server - the start is asynchronous, the returned
+     * future is completed after initializiation is finished
      * 
      * @param project
      * @param file
      * @param mimeType
      * 
-     * @return LSP server binding
+     * @return future with the LSP server binding, completes with null if no server can be started
      */
     @SuppressWarnings("AccessingNonPublicFieldOfAnotherObject")
-    private static synchronized LSPBindings getBindingsImpl(Project project, FileObject file, String mimeType) {
+    private static synchronized CompletableFuture<LSPBindings> getBindingsImpl(Project project, FileObject file, String mimeType) {
         FileObject dir;
 
         if (project == null) {
@@ -192,29 +310,189 @@ public class LSPBindingFactory {
             bindings = bindingsReference.get();
         }
 
-        if (bindings != null && !bindings.isProcessAlive()) {
-            bindings = null;
+        if (bindings != null && bindings.isAlive()) {
+            lspKeepAlive.put(bindings, System.currentTimeMillis());
+            return CompletableFuture.completedFuture(bindings);
         }
 
-        if (bindings == null) {
-            bindings = buildBindings(project, mimeType, dir, uri);
-            if (bindings != null) {
-                project2MimeType2Server.computeIfAbsent(uri, p -> new HashMap<>())
-                    .put(mimeType, new WeakReference<>(bindings));
-                WORKER.post(() -> ideChangeSupport.fireChange());
+        CompletableFuture<LSPBindings> startup = project2MimeType2Startup.getOrDefault(uri, Collections.emptyMap()).get(mimeType);
+
+        if (startup == null) {
+            if (bindings == null && project2MimeType2Unavailable.getOrDefault(uri, Collections.emptySet()).contains(mimeType)) {
+                // a previous start didn't provide a server
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (SHARE_SERVERS) {
+                LSPBindings shared = findSharedServer(mimeType);
+
+                if (shared != null) {
+                    share(uri, dir, mimeType, shared);
+                    WORKER.post(LSPBindingFactory::sharedServerAdded);
+                    return CompletableFuture.completedFuture(shared);
+                }
+
+                CompletableFuture<LSPBindings> sharedStartup = findStartup(mimeType);
+
+                if (sharedStartup != null) {
+                    // wait for the server started for another project, start an own one if it cannot be shared
+                    return sharedStartup.handle((started, ex) -> started)
+                                        .thenCompose(started -> shareOrStart(project, mimeType, dir, uri, started));
+                }
             }
+
+            startup = startBindings(project, mimeType, dir, uri);
         }
 
-        if(bindings != null) {
-            lspKeepAlive.put(bindings, System.currentTimeMillis());
+        return startup;
+    }
+
+    private static synchronized CompletableFuture<LSPBindings> startBindings(Project project, String mimeType, FileObject dir, URI uri) {
+        Map<String, CompletableFuture<LSPBindings>> mimeType2Startup = project2MimeType2Startup.computeIfAbsent(uri, p -> new HashMap<>());
+        CompletableFuture<LSPBindings> startup = mimeType2Startup.get(mimeType);
+
+        if (startup != null) {
+            return startup;
+        }
+
+        startup = CompletableFuture.supplyAsync(() -> buildBindings(project, mimeType, dir, uri), STARTUP)
+                                   .thenCompose(f -> f);
+        // register before listening, the start may already be finished
+        mimeType2Startup.put(mimeType, startup);
+        CompletableFuture<LSPBindings> thisStartup = startup;
+        startup.whenComplete((started, ex) -> {
+            if (ex != null) {
+                LOG.log(Level.WARNING, null, ex);
+            }
+            startupFinished(uri, mimeType, thisStartup, ex == null ? started : null);
+        });
+
+        return startup;
+    }
+
+    private static CompletableFuture<LSPBindings> shareOrStart(Project project, String mimeType, FileObject dir, URI uri, LSPBindings started) {
+        if (started != null && started.isAlive() && started.getInitResult().getCapabilities().hasWorkspaceFoldersSupport()) {
+            synchronized (LSPBindingFactory.class) {
+                share(uri, dir, mimeType, started);
+            }
+            sharedServerAdded();
+            return CompletableFuture.completedFuture(started);
+        }
+
+        return startBindings(project, mimeType, dir, uri);
+    }
+
+    /**
+     * @return running server for the given MIME type supporting several workspace folders
+     */
+    private static LSPBindings findSharedServer(String mimeType) {
+        for (Map<String, WeakReference<LSPBindings>> mimeType2Server : project2MimeType2Server.values()) {
+            WeakReference<LSPBindings> ref = mimeType2Server.get(mimeType);
+            LSPBindings candidate = ref != null ? ref.get() : null;
+
+            if (candidate != null && candidate.isAlive() && candidate.getInitResult().getCapabilities().hasWorkspaceFoldersSupport()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return start of a server for the given MIME type for any project
+     */
+    private static CompletableFuture<LSPBindings> findStartup(String mimeType) {
+        for (Map<String, CompletableFuture<LSPBindings>> mimeType2Startup : project2MimeType2Startup.values()) {
+            CompletableFuture<LSPBindings> startup = mimeType2Startup.get(mimeType);
+
+            if (startup != null) {
+                return startup;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * add the project's folder to the server's workspace and route the project's files to it
+     */
+    private static void share(URI uri, FileObject dir, String mimeType, LSPBindings shared) {
+        shared.addWorkspaceFolder(dir);
+        project2MimeType2Server.computeIfAbsent(uri, p -> new HashMap<>())
+                               .put(mimeType, new WeakReference<>(shared));
+        lspKeepAlive.put(shared, System.currentTimeMillis());
+    }
+
+    private static void sharedServerAdded() {
+        bindingsChanged();
+        TextDocumentSyncServerCapabilityHandler.refreshOpenedFilesInServers();
+    }
+
+    /**
+     * remove the folders of closed projects from the workspace of shared servers
+     */
+    private static void projectsClosed(Set<Project> closed) {
+        synchronized (LSPBindingFactory.class) {
+            for (Project project : closed) {
+                FileObject dir = project.getProjectDirectory();
+                Map<String, WeakReference<LSPBindings>> mimeType2Server = project2MimeType2Server.get(dir.toURI());
+
+                if (mimeType2Server == null) {
+                    continue;
+                }
+
+                for (Iterator<WeakReference<LSPBindings>> it = mimeType2Server.values().iterator(); it.hasNext(); ) {
+                    LSPBindings b = it.next().get();
+
+                    if (b != null && b.getWorkspaceFolders().size() > 1) {
+                        b.removeWorkspaceFolder(dir);
+                        it.remove();
+                    }
+                }
+            }
+        }
+        // routes resolved since the projects were closed may lead to the shared servers
+        ROUTING_INDEX.invalidate();
+    }
+    
+    private static void startupFinished(URI uri, String mimeType, CompletableFuture<LSPBindings> startup, LSPBindings started) {
+        synchronized (LSPBindingFactory.class) {
+            project2MimeType2Startup.getOrDefault(uri, Collections.emptyMap()).remove(mimeType, startup);
+
+            if (started == null) {
+                project2MimeType2Unavailable.computeIfAbsent(uri, p -> new HashSet<>()).add(mimeType);
+                return ;
+            }
+
+            project2MimeType2Server.computeIfAbsent(uri, p -> new HashMap<>())
+                                   .put(mimeType, new WeakReference<>(started));
+            lspKeepAlive.put(started, System.currentTimeMillis());
+        }
+        bindingsChanged();
+        TextDocumentSyncServerCapabilityHandler.refreshOpenedFilesInServers();
+    }
+    
+    private static synchronized LSPBindings forgetBindings(URI uri, String mimeType) {
+        project2MimeType2Unavailable.getOrDefault(uri, Collections.emptySet()).remove(mimeType);
+        WeakReference<LSPBindings> bRef = project2MimeType2Server.getOrDefault(uri, Collections.emptyMap()).remove(mimeType);
+        LSPBindings b = bRef != null ? bRef.get() : null;
+
+        if (b != null) {
+            // a shared server is forgotten by all its projects
+            for (Map<String, WeakReference<LSPBindings>> mimeType2Server : project2MimeType2Server.values()) {
+                mimeType2Server.values().removeIf(ref -> ref.get() == b);
+            }
         }
 
-        return bindings != null ? bindings : null;
+        return b;
     }
     
     
-    public static void ensureServerRunning(Project project, String mimeType) {
-        getBindingsImpl(project, project.getProjectDirectory(), mimeType);
+    /**
+     * start the server for the given project and MIME type in background, if it is not running already
+     * 
+     * @return future which is completed when the server is initialized
+     */
+    public static CompletableFuture<LSPBindings> ensureServerRunning(Project project, String mimeType) {
+        return getBindingsImpl(project, project.getProjectDirectory(), mimeType);
     }
     
     
@@ -226,7 +504,7 @@ public class LSPBindingFactory {
                 LanguageClientImpl lc = new LanguageClientImpl();
                 InputStream in = s.getInputStream();
                 OutputStream out = s.getOutputStream();
-                Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(lc, in, new OutputStream() {
+                MessageTracer.Connection trace = MessageTracer.forServer("localhost:" + port).connect(in, new OutputStream() {
                     @Override
                     public void write(int w) throws IOException {
                         out.write(w);
@@ -234,16 +512,20 @@ public class LSPBindingFactory {
                             out.flush();
                     }
                 });
+                Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(lc, trace.getInputStream(), trace.getOutputStream(), null, trace.getWrapper());
                 launcher.startListening();
                 LanguageServer server = launcher.getRemoteProxy();
-                InitializeResult result = initServer(null, server, root);
+                InitializeResult result = initServer(null, server, root).get();
                 LSPBindings bindings = new LSPBindings(server, result, null);
+                bindings.setInitialWorkspaceFolder(root);
 
                 lc.setBindings(bindings);
                 
-                workspace2Extension2Server.put(root, Arrays.stream(extensions)
-                    .collect(Collectors.toMap(k -> k, v -> bindings)));
-                WORKER.post(() -> ideChangeSupport.fireChange());
+                Map<String, LSPBindings> extension2Server = Arrays.stream(extensions)
+                    .collect(Collectors.toMap(k -> k, v -> bindings));
+                workspace2Extension2Server.put(root, extension2Server);
+                ROUTING_INDEX.addWorkspaceRoot(root, extension2Server);
+                bindingsChanged();
             } catch (InterruptedException | ExecutionException | IOException ex) {
                 Exceptions.printStackTrace(ex);
             }
@@ -269,56 +551,74 @@ public class LSPBindingFactory {
     }
     
     
-    @SuppressWarnings({"AccessingNonPublicFieldOfAnotherObject", "ResultOfObjectAllocationIgnored"})
-    private static LSPBindings buildBindings(Project project, String mt, FileObject dir, URI baseUri) {
+    /**
+     * Start the server process (blocking) and initialize it (asynchronous).
+     * A standby server of the {@link LSPWarmPool} is used when available.
+     * Runs on the {@link #STARTUP} processor.
+     */
+    @SuppressWarnings("AccessingNonPublicFieldOfAnotherObject")
+    private static CompletableFuture<LSPBindings> buildBindings(Project project, String mt, FileObject dir, URI baseUri) {
         MimeTypeInfo mimeTypeInfo = new MimeTypeInfo(mt);
         ServerRestarter restarter = () -> {
-            synchronized (LSPBindings.class) {
-                WeakReference<LSPBindings> bRef = project2MimeType2Server.getOrDefault(baseUri, Collections.emptyMap()).remove(mt);
-                LSPBindings b = bRef != null ? bRef.get() : null;
+            LSPBindings b = forgetBindings(baseUri, mt);
 
-                if (b != null) {
-                    lspKeepAlive.remove(b);
-                    b.shutdownAndKill();
-                }
+            if (b != null) {
+                lspKeepAlive.remove(b);
+                b.shutdownAndKill();
             }
+            ROUTING_INDEX.invalidate();
         };
-        
+
         for (LanguageServerProvider provider : MimeLookup.getLookup(mt).lookupAll(LanguageServerProvider.class)) {
+            // a standby server is only used if its provider is the one to ask for the project
+            LSPWarmPool.Standby standby = LSPWarmPool.take(mt, provider);
+
+            if (standby != null) {
+                standby.handOver(restarter);
+                return connect(standby.getDescription(), mt, dir);
+            }
+
             final Lookup lkp = project != null ? Lookups.fixed(project, mimeTypeInfo, restarter) : Lookups.fixed(mimeTypeInfo, restarter);
             LanguageServerProvider.LanguageServerDescription desc = provider.startServer(lkp);
 
             if (desc != null) {
-                LSPBindings b = LanguageServerProviderAccessor.getINSTANCE().getBindings(desc);
-                if (b != null) {
-                    return b;
+                LSPBindings existing = LanguageServerProviderAccessor.getINSTANCE().getBindings(desc);
+                if (existing != null) {
+                    return CompletableFuture.completedFuture(existing);
                 }
-                try {
-                    LanguageClientImpl lci = new LanguageClientImpl();
-                    InputStream in = LanguageServerProviderAccessor.getINSTANCE().getInputStream(desc);
-                    OutputStream out = LanguageServerProviderAccessor.getINSTANCE().getOutputStream(desc);
-                    Process p = LanguageServerProviderAccessor.getINSTANCE().getProcess(desc);
-                    Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(lci, in, out);
-                    launcher.startListening();
-                    LanguageServer server = launcher.getRemoteProxy();
-                    InitializeResult result = initServer(p, server, dir); //XXX: what if a different root is expected????
-                    b = new LSPBindings(server, result, LanguageServerProviderAccessor.getINSTANCE().getProcess(desc));
+                return connect(desc, mt, dir);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Connect to a spawned server and initialize it for the given root.
+     */
+    @SuppressWarnings("ResultOfObjectAllocationIgnored")
+    private static CompletableFuture<LSPBindings> connect(LanguageServerProvider.LanguageServerDescription desc, String mt, FileObject dir) {
+        LanguageClientImpl lci = new LanguageClientImpl();
+        InputStream in = LanguageServerProviderAccessor.getINSTANCE().getInputStream(desc);
+        OutputStream out = LanguageServerProviderAccessor.getINSTANCE().getOutputStream(desc);
+        Process p = LanguageServerProviderAccessor.getINSTANCE().getProcess(desc);
+        MessageTracer.Connection trace = MessageTracer.forServer(mt).connect(in, out);
+        Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(lci, trace.getInputStream(), trace.getOutputStream(), null, trace.getWrapper());
+        launcher.startListening();
+        LanguageServer server = launcher.getRemoteProxy();
+        return initServer(p, server, dir) //XXX: what if a different root is expected????
+                .thenApply(result -> {
+                    LSPBindings b = new LSPBindings(server, result, p);
+                    b.setInitialWorkspaceFolder(dir);
                     // Register cleanup via LSPReference#run
                     new LSPBindings.LSPReference(b, Utilities.activeReferenceQueue());
                     lci.setBindings(b);
                     LanguageServerProviderAccessor.getINSTANCE().setBindings(desc, b);
-                    TextDocumentSyncServerCapabilityHandler.refreshOpenedFilesInServers();
                     return b;
-                } catch (InterruptedException | ExecutionException ex) {
-                    LOG.log(Level.WARNING, null, ex);
-                }
-            }
-        }
-        return null;
+                });
     }
     
     @SuppressWarnings("deprecation")
-    private static InitializeResult initServer(Process p, LanguageServer server, FileObject root) throws InterruptedException, ExecutionException {
+    private static CompletableFuture<InitializeResult> initServer(Process p, LanguageServer server, FileObject root) {
        InitializeParams initParams = new InitializeParams();
        initParams.setRootUri(Utils.toURI(root));
        final File rootFile = FileUtil.toFile(root);
@@ -368,26 +668,31 @@ public class LSPBindingFactory {
        wcc.getWorkspaceEdit().setDocumentChanges(true);
        wcc.getWorkspaceEdit().setResourceOperations(Arrays.asList(ResourceOperationKind.Create, ResourceOperationKind.Delete, ResourceOperationKind.Rename));
        wcc.setSymbol( symbolCapabilities); //?
+       wcc.setWorkspaceFolders(true);
 
        initParams.setCapabilities(new ClientCapabilities(wcc, tdcc, null));
-       CompletableFuture<InitializeResult> initResult = server.initialize(initParams);
-       while (true) {
-           try {
-               InitializeResult result = initResult.get(100, TimeUnit.MILLISECONDS);
-               if (result != null) {
-                   server.initialized( new InitializedParams());
-               }
-               return result;
-           } catch (TimeoutException ex) {
-               if (p != null && !p.isAlive()) {
-                   //@todo endless loop?? 
+       CompletableFuture<InitializeResult> result = new CompletableFuture<>();
+       server.initialize(initParams).whenComplete((initResult, ex) -> {
+           if (ex != null) {
+               result.completeExceptionally(ex);
+               return ;
+           }
+           if (initResult != null) {
+               server.initialized( new InitializedParams());
+           }
+           result.complete(initResult);
+       });
+       if (p != null) {
+           p.onExit().thenRun(() -> {
+               if (!result.isDone()) {
                    LOG.log(Level.WARNING, "no answer from LSP server, it seems dead.");
                    InitializeResult emptyResult = new InitializeResult();
                    emptyResult.setCapabilities(new ServerCapabilities());
-                   return emptyResult;
+                   result.complete(emptyResult);
                }
-           }
+           });
        }
+       return result;
     }
     
     
@@ -412,6 +717,7 @@ public class LSPBindingFactory {
                     }
                 }
             }
+            LSPWarmPool.shutdown();
         }
     }
     
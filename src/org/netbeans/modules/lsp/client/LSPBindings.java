@@ -20,15 +20,23 @@ package org.netbeans.modules.lsp.client;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.eclipse.lsp4j.DidChangeWorkspaceFoldersParams;
 import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.WorkspaceFolder;
+import org.eclipse.lsp4j.WorkspaceFoldersChangeEvent;
 import org.eclipse.lsp4j.services.LanguageServer;
 import org.eclipse.lsp4j.services.TextDocumentService;
 import org.eclipse.lsp4j.services.WorkspaceService;
@@ -43,13 +51,17 @@ public class LSPBindings {
 
     private static final Logger LOG = Logger.getLogger(LSPBindings.class.getName());
 
-    private final Set<FileObject> openedFiles = new HashSet<>();
+    // modified in the notification lane, read by other threads
+    private final Set<FileObject> openedFiles = ConcurrentHashMap.newKeySet();
+    // by URI, servers shared by several projects have a folder for each of them
+    private final Map<String, WorkspaceFolder> workspaceFolders = new LinkedHashMap<>();
 
 
 
     private final LanguageServer server;
     private final LSPInitializeResult initResult;
     private final Process process;
+    private final LSPExecutor executor = new LSPExecutor(LSPBindings.class.getName());
 
     protected LSPBindings(LanguageServer server, InitializeResult initResult, Process process) {
         this.server = server;
@@ -91,6 +103,14 @@ public class LSPBindings {
     public boolean isProcessAlive() {
         return (process != null && process.isAlive());
     }
+
+    /**
+     * @return false if the server process has terminated, servers connected
+     *         without a process (e.g. via socket) are always considered alive
+     */
+    public boolean isAlive() {
+        return process == null || process.isAlive();
+    }
     
     public TextDocumentService getTextDocumentService() {
         return server.getTextDocumentService();
@@ -100,6 +120,13 @@ public class LSPBindings {
         return server.getWorkspaceService();
     }
 
+    /**
+     * @return executor lanes for work talking to this server
+     */
+    public LSPExecutor getExecutor() {
+        return executor;
+    }
+
     public LSPInitializeResult getInitResult() {
         //XXX: defenzive copy?
         return initResult;
@@ -110,6 +137,66 @@ public class LSPBindings {
         return openedFiles;
     }
 
+    /**
+     * @return the workspace folders of the server, the folder it was initialized for first
+     */
+    public synchronized List<WorkspaceFolder> getWorkspaceFolders() {
+        return new ArrayList<>(workspaceFolders.values());
+    }
+
+    synchronized void setInitialWorkspaceFolder(FileObject root) {
+        String uri = Utils.toURI(root);
+        workspaceFolders.put(uri, new WorkspaceFolder(uri, root.getNameExt()));
+    }
+
+    /**
+     * Add a folder to the workspace of the server, the server is notified if
+     * the folder is new.
+     */
+    void addWorkspaceFolder(FileObject root) {
+        String uri = Utils.toURI(root);
+        WorkspaceFolder folder = new WorkspaceFolder(uri, root.getNameExt());
+
+        synchronized (this) {
+            if (workspaceFolders.putIfAbsent(uri, folder) != null) {
+                return ;
+            }
+        }
+
+        executor.post(LSPExecutor.Lane.NOTIFICATION, () -> {
+            WorkspaceFoldersChangeEvent event = new WorkspaceFoldersChangeEvent(Collections.singletonList(folder), Collections.emptyList());
+            getWorkspaceService().didChangeWorkspaceFolders(new DidChangeWorkspaceFoldersParams(event));
+        });
+    }
+
+    /**
+     * Remove a folder from the workspace of the server, the server is
+     * notified if the folder was part of the workspace.
+     */
+    void removeWorkspaceFolder(FileObject root) {
+        WorkspaceFolder folder;
+
+        synchronized (this) {
+            folder = workspaceFolders.remove(Utils.toURI(root));
+        }
+
+        if (folder == null) {
+            return ;
+        }
+
+        executor.post(LSPExecutor.Lane.NOTIFICATION, () -> {
+            WorkspaceFoldersChangeEvent event = new WorkspaceFoldersChangeEvent(Collections.emptyList(), Collections.singletonList(folder));
+            getWorkspaceService().didChangeWorkspaceFolders(new DidChangeWorkspaceFoldersParams(event));
+        });
+    }
+
+    /**
+     * @return resident memory of the server process in bytes, -1 if unknown
+     */
+    public long getResidentMemory() {
+        return process != null ? LSPWarmPool.residentMemory(process) : -1;
+    }
+
     /**
      * The {@code LSPReference} adds cleanup actions to LSP Bindings after the
      * bindings are GCed. The backing process is shutdown and the process
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Executor lanes of a single language server. Every {@link LSPBindings} owns
+ * its own lanes, so a hanging server only blocks its own work and never the
+ * work for servers of other languages.
+ *
+ * @author ranSprd
+ */
+public final class LSPExecutor {
+
+    public enum Lane {
+        /** requests triggered directly by the user, e.g. code actions of a hint */
+        INTERACTIVE(2),
+        /** requests of background tasks, e.g. mark occurrences or breadcrumbs */
+        BACKGROUND(1),
+        /** notifications to and from the server, single threaded to keep their order */
+        NOTIFICATION(1);
+
+        private final int throughput;
+
+        private Lane(int throughput) {
+            this.throughput = throughput;
+        }
+    }
+
+    private final Map<Lane, LaneProcessor> lanes = new EnumMap<>(Lane.class);
+
+    LSPExecutor(String name) {
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneProcessor(name + "-" + lane.name(), lane.throughput));
+        }
+    }
+
+    /**
+     * run the given task in the given lane of this server
+     */
+    public RequestProcessor.Task post(Lane lane, Runnable r) {
+        return lanes.get(lane).post(r);
+    }
+
+    /**
+     * @return number of tasks waiting in the given lane
+     */
+    public int getQueueDepth(Lane lane) {
+        return lanes.get(lane).getQueueDepth();
+    }
+
+    /**
+     * @return average time in milliseconds the tasks of the given lane waited to be started
+     */
+    public long getAverageWaitMillis(Lane lane) {
+        LaneProcessor processor = lanes.get(lane);
+        long started = processor.started.sum();
+
+        return started > 0 ? TimeUnit.NANOSECONDS.toMillis(processor.waitNanos.sum() / started) : 0;
+    }
+
+    /**
+     * @return longest time in milliseconds a task of the given lane waited to be started
+     */
+    public long getMaxWaitMillis(Lane lane) {
+        return TimeUnit.NANOSECONDS.toMillis(lanes.get(lane).maxWaitNanos.get());
+    }
+
+    private static final class LaneProcessor {
+        private final RequestProcessor processor;
+        // tasks not started yet, cancelled tasks are finished without running
+        private final Set<RequestProcessor.Task> pending = ConcurrentHashMap.newKeySet();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private LaneProcessor(String name, int throughput) {
+            this.processor = new RequestProcessor(name, throughput, false, false);
+        }
+
+        private RequestProcessor.Task post(Runnable r) {
+            long posted = System.nanoTime();
+            RequestProcessor.Task[] self = new RequestProcessor.Task[1];
+
+            self[0] = processor.create(() -> {
+                long waited = System.nanoTime() - posted;
+
+                pending.remove(self[0]);
+                started.increment();
+                waitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                r.run();
+            });
+            pending.add(self[0]);
+            self[0].schedule(0);
+            return self[0];
+        }
+
+        private int getQueueDepth() {
+            pending.removeIf(RequestProcessor.Task::isFinished);
+            return pending.size();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import org.eclipse.lsp4j.ServerInfo;
+import org.netbeans.modules.lsp.client.bindings.CompletionProviderImpl;
+import org.netbeans.modules.lsp.client.bindings.Formatter;
+import org.netbeans.modules.lsp.client.bindings.LanguageClientImpl;
+import org.netbeans.modules.lsp.client.bindings.TextDocumentSyncServerCapabilityHandler;
+import org.netbeans.modules.lsp.client.bindings.hints.DiagnosticStore;
+import org.netbeans.modules.lsp.client.log.LatencyHistogram;
+import org.openide.modules.OnStart;
+
+/**
+ * Health of the LSP client: running servers, their queues and opened files,
+ * requests and caches. All values are read from the counters kept by the
+ * individual parts when a {@link #snapshot() } is taken, nothing is collected
+ * in between.
+ *
+ * The values are registered as MBean {@value #OBJECT_NAME} when the IDE is
+ * started with {@code -J-Dorg.netbeans.modules.lsp.client.metrics=true}.
+ *
+ * @author ranSprd
+ */
+public final class LSPMetrics {
+
+    public static final String OBJECT_NAME = "org.netbeans.modules.lsp.client:type=Metrics";
+    private static final String ENABLED_PROPERTY = "org.netbeans.modules.lsp.client.metrics";
+    private static final Logger LOG = Logger.getLogger(LSPMetrics.class.getName());
+
+    private LSPMetrics() {
+    }
+
+    /**
+     * @return current values by name, sorted by name
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        long now = System.currentTimeMillis();
+        int alive = 0;
+        long residentMemory = 0;
+
+        List<LSPBindings> servers = new ArrayList<>(LSPBindingFactory.getAllBindings());
+        for (LSPBindings b : servers) {
+            String prefix = "server." + getServerName(b) + ".";
+            LSPExecutor executor = b.getExecutor();
+
+            if (b.isAlive()) {
+                alive++;
+            }
+            result.put(prefix + "alive", b.isAlive());
+            result.put(prefix + "openedFiles", b.getOpenedFiles().size());
+            result.put(prefix + "workspaceFolders", b.getWorkspaceFolders().size());
+            long memory = b.getResidentMemory();
+            result.put(prefix + "residentMemoryBytes", memory);
+            residentMemory += Math.max(0, memory);
+            Long lastAccess = LSPBindingFactory.getLastAccessTime(b);
+            result.put(prefix + "keepAliveAgeSeconds", lastAccess != null ? (now - lastAccess) / 1000 : -1L);
+            LatencyHistogram format = Formatter.getFormatLatency(b);
+            result.put(prefix + "format.count", format.getCount());
+            result.put(prefix + "format.p50Millis", format.getPercentileNanos(50) / 1_000_000);
+            result.put(prefix + "format.p95Millis", format.getPercentileNanos(95) / 1_000_000);
+            result.put(prefix + "format.maxMillis", format.getMaxNanos() / 1_000_000);
+            for (LSPExecutor.Lane lane : LSPExecutor.Lane.values()) {
+                String lanePrefix = prefix + lane.name().toLowerCase(Locale.US) + ".";
+                result.put(lanePrefix + "queueDepth", executor.getQueueDepth(lane));
+                result.put(lanePrefix + "averageWaitMillis", executor.getAverageWaitMillis(lane));
+                result.put(lanePrefix + "maxWaitMillis", executor.getMaxWaitMillis(lane));
+            }
+        }
+        result.put("servers.running", servers.size());
+        result.put("servers.alive", alive);
+        result.put("servers.residentMemoryBytes", residentMemory);
+
+        result.put("warmPool.hits", LSPWarmPool.getHitCount());
+        result.put("warmPool.misses", LSPWarmPool.getMissCount());
+        result.put("warmPool.standby", LSPWarmPool.getStandbyCount());
+        result.put("warmPool.memoryBytes", LSPWarmPool.getStandbyMemory());
+
+        result.put("requests.inFlight", LSPRequests.getInFlightCount());
+        result.put("requests.completed", LSPRequests.getCompletedCount());
+        result.put("requests.cancelled", LSPRequests.getCancelledCount());
+
+        LSPRoutingIndex routing = LSPBindingFactory.getRoutingIndex();
+        result.put("routing.hits", routing.getHitCount());
+        result.put("routing.misses", routing.getMissCount());
+        result.put("routing.size", routing.size());
+
+        result.put("didChange.saved", TextDocumentSyncServerCapabilityHandler.getSavedDidChangeCount());
+        result.put("format.timeouts", Formatter.getFormatTimeoutCount());
+        result.put("completion.cached", CompletionProviderImpl.getCachedCompletionCount());
+        result.put("completion.server", CompletionProviderImpl.getServerCompletionCount());
+
+        result.put("diagnostics.documents", DiagnosticStore.INSTANCE.getDocumentCount());
+        result.put("diagnostics.count", DiagnosticStore.INSTANCE.getDiagnosticCount());
+        result.put("diagnostics.estimatedBytes", DiagnosticStore.INSTANCE.getEstimatedMemory());
+        result.put("diagnostics.dropped", LanguageClientImpl.getDroppedDiagnosticsCount());
+        result.put("diagnostics.merged", LanguageClientImpl.getMergedDiagnosticsCount());
+        result.put("diagnostics.applied", LanguageClientImpl.getAppliedDiagnosticsCount());
+
+        return result;
+    }
+
+    private static String getServerName(LSPBindings b) {
+        ServerInfo info = b.getInitResult().getServerInfo();
+        String name = info != null && info.getName() != null ? info.getName().replaceAll("[^A-Za-z0-9_-]", "_") : "server";
+
+        return name + "@" + Integer.toHexString(System.identityHashCode(b));
+    }
+
+    @OnStart
+    public static class Registration implements Runnable {
+
+        @Override
+        public void run() {
+            if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+                return ;
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                LOG.log(Level.INFO, null, ex);
+            }
+        }
+
+    }
+
+    /** read only attributes, one for every value of the snapshot */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = snapshot().get(attribute);
+
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("read only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = snapshot();
+            AttributeList result = new AttributeList();
+
+            for (String attribute : attributes) {
+                Object value = values.get(attribute);
+                if (value != null) {
+                    result.add(new Attribute(attribute, value));
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            // there are no operations
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+            for (Map.Entry<String, Object> e : snapshot().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false));
+            }
+
+            return new MBeanInfo(LSPMetrics.class.getName(), "LSP client health",
+                                 attributes.toArray(new MBeanAttributeInfo[0]),
+                                 null, new MBeanOperationInfo[0], null);
+        }
+
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import com.google.common.collect.MapMaker;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps track of the running requests of editor features. A request belongs
+ * to an owner (e.g. a text component or a background task) and has a kind.
+ * A new request of the same owner and kind supersedes the running one, which
+ * is cancelled. Cancelling the future of a request makes lsp4j send a
+ * {@code $/cancelRequest} notification, so the server stops the computation.
+ *
+ * @author ranSprd
+ */
+public final class LSPRequests {
+
+    private static final int POLL_MILLIS = 50;
+
+    private static final ConcurrentMap<Object, Map<String, CompletableFuture<?>>> owner2Requests = new MapMaker().weakKeys().makeMap();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder cancelled = new LongAdder();
+
+    private LSPRequests() {
+    }
+
+    /**
+     * register the request as the current one of the given owner and kind,
+     * a still running request of the same owner and kind is cancelled
+     *
+     * @return the given request
+     */
+    public static <T> CompletableFuture<T> track(Object owner, String kind, CompletableFuture<T> request) {
+        Map<String, CompletableFuture<?>> kind2Request = owner2Requests.computeIfAbsent(owner, o -> new ConcurrentHashMap<>());
+        CompletableFuture<?> previous = kind2Request.put(kind, request);
+
+        if (previous != null && previous != request) {
+            cancelRequest(previous);
+        }
+
+        request.whenComplete((result, ex) -> {
+            kind2Request.remove(kind, request);
+            if (!request.isCancelled()) {
+                completed.increment();
+            }
+        });
+
+        return request;
+    }
+
+    /**
+     * cancel the running request of the given owner and kind, if there is one
+     */
+    public static void cancel(Object owner, String kind) {
+        Map<String, CompletableFuture<?>> kind2Request = owner2Requests.get(owner);
+
+        if (kind2Request != null) {
+            CompletableFuture<?> request = kind2Request.remove(kind);
+
+            if (request != null) {
+                cancelRequest(request);
+            }
+        }
+    }
+
+    /**
+     * wait for the result of the request. The request is cancelled if the
+     * waiting thread is interrupted or the caller is not interested anymore.
+     *
+     * @param request the request
+     * @param isCancelled polled while waiting
+     * @throws CancellationException if the request was cancelled
+     */
+    public static <T> T get(CompletableFuture<T> request, BooleanSupplier isCancelled) throws InterruptedException, ExecutionException {
+        try {
+            while (true) {
+                if (isCancelled.getAsBoolean()) {
+                    cancelRequest(request);
+                    throw new CancellationException();
+                }
+                try {
+                    return request.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    //still running, check cancel state again
+                }
+            }
+        } catch (InterruptedException ex) {
+            cancelRequest(request);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return number of tracked requests still waiting for the response
+     */
+    public static int getInFlightCount() {
+        int count = 0;
+
+        for (Map<String, CompletableFuture<?>> kind2Request : owner2Requests.values()) {
+            count += kind2Request.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return number of tracked requests which were answered by the server
+     */
+    public static long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return number of tracked requests which were cancelled before they were answered
+     */
+    public static long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    private static void cancelRequest(CompletableFuture<?> request) {
+        if (request.cancel(true)) {
+            cancelled.increment();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import com.google.common.collect.MapMaker;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Routing index used by {@link LSPBindingFactory} to find the server of a file
+ * without taking a lock.
+ *
+ * It consists of a trie of manually connected workspace roots (keyed by path
+ * segments) and a weakly keyed cache of already resolved files. The cache has
+ * to be invalidated whenever the result of a resolution may change, e.g. if
+ * projects are opened/closed, MIME types are reconfigured or the set of
+ * running servers changes.
+ *
+ * @author ranSprd
+ */
+public final class LSPRoutingIndex {
+
+    private final Node workspaceRoots = new Node();
+    private final ConcurrentMap<FileObject, Route> file2Route = new MapMaker().weakKeys().makeMap();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    LSPRoutingIndex() {
+    }
+
+    /**
+     * register a workspace root, files below this root are routed by their extension
+     */
+    void addWorkspaceRoot(FileObject root, Map<String, LSPBindings> extension2Server) {
+        Node node = workspaceRoots;
+        String path = root.getPath();
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end > start) {
+                node = node.children.computeIfAbsent(path.substring(start, end), segment -> new Node());
+            }
+            start = end + 1;
+        }
+        node.root = root;
+        node.extension2Server = extension2Server;
+        invalidate();
+    }
+
+    /**
+     * @return bindings of the deepest workspace root containing the given file or
+     *         null if no root contains the file or the root doesn't handle the extension
+     */
+    LSPBindings findWorkspaceBindings(FileObject file) {
+        Node node = workspaceRoots;
+        Node found = null;
+        String path = file.getPath();
+        int start = 0;
+        while (true) {
+            if (node.extension2Server != null && FileUtil.isParentOf(node.root, file)) {
+                found = node;
+            }
+            if (start >= path.length() || node.children.isEmpty()) {
+                break;
+            }
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end > start) {
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    break;
+                }
+            }
+            start = end + 1;
+        }
+        return found != null ? found.extension2Server.get(file.getExt()) : null;
+    }
+
+    /**
+     * @return the cached route of the file or null, if the file is not resolved yet
+     */
+    Route getRoute(FileObject file) {
+        Route route = file2Route.get(file);
+        if (route != null && route.ext.equals(file.getExt())) {
+            hits.increment();
+            return route;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * store a route, which was resolved while the index had the given generation.
+     * Outdated routes are silently ignored.
+     */
+    void putRoute(FileObject file, Route route, int resolvedInGeneration) {
+        if (generation.get() != resolvedInGeneration) {
+            return ;
+        }
+        file2Route.put(file, route);
+        // an invalidation between the check and the put did not see the route
+        if (generation.get() != resolvedInGeneration) {
+            file2Route.remove(file, route);
+        }
+    }
+
+    int generation() {
+        return generation.get();
+    }
+
+    /** forget all resolved routes, the next lookup of each file resolves the route again */
+    public void invalidate() {
+        generation.incrementAndGet();
+        file2Route.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** number of currently cached routes */
+    public int size() {
+        return file2Route.size();
+    }
+
+    private static final class Node {
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile FileObject root;
+        private volatile Map<String, LSPBindings> extension2Server;
+    }
+
+    /**
+     * Resolved routing information of a single file. Bindings are only weakly
+     * referenced, the keep-alive handling of {@link LSPBindingFactory} decides
+     * about their lifetime.
+     */
+    static final class Route {
+
+        private final String ext;
+        private final String mimeType;
+        private final Project project;
+        private final boolean workspace;
+        private final WeakReference<LSPBindings> bindings;
+
+        private Route(String ext, String mimeType, Project project, boolean workspace, LSPBindings bindings) {
+            this.ext = ext;
+            this.mimeType = mimeType;
+            this.project = project;
+            this.workspace = workspace;
+            this.bindings = bindings != null ? new WeakReference<>(bindings) : null;
+        }
+
+        static Route workspace(FileObject file, LSPBindings bindings) {
+            return new Route(file.getExt(), null, null, true, bindings);
+        }
+
+        static Route project(FileObject file, String mimeType, Project project, LSPBindings bindings) {
+            return new Route(file.getExt(), mimeType, project, false, bindings);
+        }
+
+        String getMimeType() {
+            return mimeType;
+        }
+
+        Project getProject() {
+            return project;
+        }
+
+        boolean isWorkspace() {
+            return workspace;
+        }
+
+        /** false, if no server is available for the file (negative cache entry) */
+        boolean hasServer() {
+            return bindings != null;
+        }
+
+        LSPBindings getBindings() {
+            return bindings != null ? bindings.get() : null;
+        }
+    }
+}
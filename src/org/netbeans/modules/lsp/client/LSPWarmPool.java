@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+import org.netbeans.modules.lsp.client.bindings.CustomIndexerImpl;
+import org.netbeans.modules.lsp.client.options.MimeTypeInfo;
+import org.netbeans.modules.lsp.client.spi.LanguageServerProvider;
+import org.netbeans.modules.lsp.client.spi.LanguageServerProvider.LanguageServerDescription;
+import org.netbeans.modules.lsp.client.spi.ServerRestarter;
+import org.openide.util.RequestProcessor;
+import org.openide.util.lookup.Lookups;
+
+/**
+ * Spawned but not initialized server processes, one for each of the MIME
+ * types with the most indexed files. A server needed for a new project or
+ * folder is taken from the pool instead of being spawned, and initialized for
+ * its root. Only servers of {@link LanguageServerProvider.ProjectIndependent}
+ * providers are pooled, as they are spawned without a project.
+ *
+ * The pool is disabled unless its size is set with
+ * {@code -J-Dorg.netbeans.modules.lsp.client.warmPool.size=<servers>}, the
+ * resident memory of the standby processes is limited by
+ * {@code -J-Dorg.netbeans.modules.lsp.client.warmPool.memoryMB=<MB>} (512 MB
+ * by default), where the platform reports it.
+ *
+ * @author ranSprd
+ */
+public final class LSPWarmPool {
+
+    private static final Logger LOG = Logger.getLogger(LSPWarmPool.class.getName());
+    private static final RequestProcessor WORKER = new RequestProcessor(LSPWarmPool.class.getName(), 1, false, false);
+    private static final int SIZE = Integer.getInteger("org.netbeans.modules.lsp.client.warmPool.size", 0);
+    private static final long MEMORY_BUDGET = Long.getLong("org.netbeans.modules.lsp.client.warmPool.memoryMB", 512) * 1024 * 1024;
+
+    private static final Map<String, Standby> mimeType2Standby = new HashMap<>();
+    // MIME types whose providers depend on the project or do not start own processes, they are not started again
+    private static final Set<String> notPoolable = new HashSet<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private LSPWarmPool() {
+    }
+
+    public static boolean isEnabled() {
+        return SIZE > 0;
+    }
+
+    /**
+     * spawn the missing standby servers in background, for the MIME types
+     * with the most indexed files
+     */
+    public static void refill() {
+        if (isEnabled()) {
+            WORKER.post(LSPWarmPool::fill);
+        }
+    }
+
+    /**
+     * @return a standby server the given provider started for the MIME type,
+     *         null if there is none
+     */
+    static Standby take(String mimeType, LanguageServerProvider provider) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Standby standby;
+
+        synchronized (LSPWarmPool.class) {
+            standby = mimeType2Standby.get(mimeType);
+            if (standby == null || standby.provider != provider) {
+                standby = null;
+            } else {
+                mimeType2Standby.remove(mimeType);
+            }
+        }
+
+        if (standby == null || !standby.process.isAlive()) {
+            MISSES.increment();
+            return null;
+        }
+
+        HITS.increment();
+        refill();
+        return standby;
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static synchronized int getStandbyCount() {
+        return mimeType2Standby.size();
+    }
+
+    /**
+     * @return resident memory of the standby processes in bytes, as far as known
+     */
+    public static long getStandbyMemory() {
+        long result = 0;
+
+        for (Standby standby : standbys()) {
+            result += Math.max(0, residentMemory(standby.process));
+        }
+
+        return result;
+    }
+
+    /**
+     * kill all standby servers
+     */
+    static void shutdown() {
+        for (Standby standby : standbys()) {
+            standby.process.destroy();
+        }
+        synchronized (LSPWarmPool.class) {
+            mimeType2Standby.clear();
+        }
+    }
+
+    private static synchronized List<Standby> standbys() {
+        return new ArrayList<>(mimeType2Standby.values());
+    }
+
+    private static void fill() {
+        List<Map.Entry<String, Integer>> mimeTypes = new ArrayList<>(CustomIndexerImpl.getIndexedMimeTypeCounts().entrySet());
+
+        mimeTypes.sort((e1, e2) -> e2.getValue() - e1.getValue());
+
+        int wanted = 0;
+
+        for (Map.Entry<String, Integer> e : mimeTypes) {
+            if (wanted >= SIZE) {
+                break;
+            }
+
+            String mimeType = e.getKey();
+
+            if (MimeLookup.getLookup(mimeType).lookup(LanguageServerProvider.class) == null) {
+                continue;
+            }
+
+            synchronized (LSPWarmPool.class) {
+                if (notPoolable.contains(mimeType)) {
+                    continue;
+                }
+            }
+
+            wanted++;
+
+            synchronized (LSPWarmPool.class) {
+                Standby existing = mimeType2Standby.get(mimeType);
+                if (existing != null) {
+                    if (existing.process.isAlive()) {
+                        continue;
+                    }
+                    mimeType2Standby.remove(mimeType);
+                }
+            }
+
+            if (getStandbyMemory() >= MEMORY_BUDGET) {
+                LOG.log(Level.FINE, "Memory budget of the warm pool used up, not starting {0}", mimeType);
+                return ;
+            }
+
+            Standby standby = spawn(mimeType);
+
+            if (standby != null) {
+                synchronized (LSPWarmPool.class) {
+                    mimeType2Standby.put(mimeType, standby);
+                }
+            }
+        }
+    }
+
+    private static Standby spawn(String mimeType) {
+        MimeTypeInfo mimeTypeInfo = new MimeTypeInfo(mimeType);
+
+        for (LanguageServerProvider provider : MimeLookup.getLookup(mimeType).lookupAll(LanguageServerProvider.class)) {
+            if (!(provider instanceof LanguageServerProvider.ProjectIndependent)) {
+                // it may claim any project, a later provider's server might never be used
+                LOG.log(Level.FINE, "Server for {0} depends on the project, not kept in the warm pool", mimeType);
+                synchronized (LSPWarmPool.class) {
+                    notPoolable.add(mimeType);
+                }
+                return null;
+            }
+
+            Standby standby = new Standby(mimeType, provider);
+            LanguageServerDescription desc = provider.startServer(Lookups.fixed(mimeTypeInfo, standby.restarter));
+
+            if (desc == null) {
+                continue;
+            }
+
+            LanguageServerProviderAccessor accessor = LanguageServerProviderAccessor.getINSTANCE();
+            Process process = accessor.getProcess(desc);
+
+            if (process == null || accessor.getBindings(desc) != null) {
+                // only own processes can be kept aside and killed
+                LOG.log(Level.FINE, "Server for {0} cannot be kept in the warm pool", mimeType);
+                if (accessor.getBindings(desc) == null) {
+                    // the connection is not used by anybody else
+                    close(accessor, desc);
+                }
+                synchronized (LSPWarmPool.class) {
+                    notPoolable.add(mimeType);
+                }
+                return null;
+            }
+
+            standby.desc = desc;
+            standby.process = process;
+            return standby;
+        }
+
+        return null;
+    }
+
+    private static void close(LanguageServerProviderAccessor accessor, LanguageServerDescription desc) {
+        try {
+            accessor.getOutputStream(desc).close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+        try {
+            accessor.getInputStream(desc).close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * @return resident memory of the process in bytes, -1 if unknown
+     */
+    static long residentMemory(Process process) {
+        File status = new File("/proc/" + process.pid() + "/status");
+
+        if (!status.canRead()) {
+            return -1;
+        }
+
+        try (BufferedReader r = new BufferedReader(new FileReader(status))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    String kb = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+
+        return -1;
+    }
+
+    /** a spawned server waiting for its root */
+    static final class Standby {
+
+        private final String mimeType;
+        private final LanguageServerProvider provider;
+        private final DelegatingRestarter restarter = new DelegatingRestarter(this);
+        private LanguageServerDescription desc;
+        private Process process;
+
+        private Standby(String mimeType, LanguageServerProvider provider) {
+            this.mimeType = mimeType;
+            this.provider = provider;
+        }
+
+        LanguageServerDescription getDescription() {
+            return desc;
+        }
+
+        /**
+         * hand the server over, restarts requested by the provider are passed to the given restarter
+         */
+        void handOver(ServerRestarter target) {
+            restarter.target = target;
+        }
+    }
+
+    /**
+     * the provider's restart requests for a standby server remove it from the
+     * pool, once the server is handed over they are passed on
+     */
+    private static final class DelegatingRestarter implements ServerRestarter {
+
+        private final Standby standby;
+        private volatile ServerRestarter target;
+
+        public DelegatingRestarter(Standby standby) {
+            this.standby = standby;
+        }
+
+        @Override
+        public void restart() {
+            ServerRestarter t = target;
+
+            if (t != null) {
+                t.restart();
+                return ;
+            }
+
+            synchronized (LSPWarmPool.class) {
+                mimeType2Standby.remove(standby.mimeType, standby);
+            }
+            if (standby.process != null) {
+                standby.process.destroy();
+            }
+            refill();
+        }
+
+    }
+}
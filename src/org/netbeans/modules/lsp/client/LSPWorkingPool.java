@@ -22,7 +22,9 @@ import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.netbeans.modules.lsp.client.bindings.LanguageClientImpl;
+import org.netbeans.modules.lsp.client.bindings.TextDocumentSyncServerCapabilityHandler;
 import org.openide.filesystems.FileObject;
 import org.openide.util.RequestProcessor;
 
@@ -39,29 +41,21 @@ public class LSPWorkingPool {
     
     private static final int DELAY = 500;
 
-    private static final Map<FileObject, Map<BackgroundTask, RequestProcessor.Task>> backgroundTasks = new WeakHashMap<>();
+    private static final Map<FileObject, Map<BackgroundTask, Dispatch>> backgroundTasks = new WeakHashMap<>();
 
-    @SuppressWarnings("AccessingNonPublicFieldOfAnotherObject")
     public static synchronized void addBackgroundTask(FileObject file, BackgroundTask task) {
-        RequestProcessor.Task req = WORKER.create(() -> {
-            LSPBindings bindings = LSPBindingFactory.getBindingForFile(file);
-
-            if (bindings == null)
-                return ;
+        Dispatch dispatch = new Dispatch(file, task);
 
-            task.run(bindings, file);
-        });
-
-        backgroundTasks.computeIfAbsent(file, f -> new LinkedHashMap<>()).put(task, req);
-        scheduleBackgroundTask(req);
+        backgroundTasks.computeIfAbsent(file, f -> new LinkedHashMap<>()).put(task, dispatch);
+        scheduleBackgroundTask(dispatch);
     }
     
     
     public static synchronized void removeBackgroundTask(FileObject file, BackgroundTask task) {
-        RequestProcessor.Task req = backgroundTasksMapFor(file).remove(task);
+        Dispatch dispatch = backgroundTasksMapFor(file).remove(task);
 
-        if (req != null) {
-            req.cancel();
+        if (dispatch != null) {
+            dispatch.cancel();
         }
     }
     
@@ -69,15 +63,22 @@ public class LSPWorkingPool {
         WORKER.post(r);
     }
 
-    private static void scheduleBackgroundTask(RequestProcessor.Task req) {
-        WORKER.post(req, DELAY);
+    /**
+     * run the given task in the given lane of the server
+     */
+    public static void runOnBackground(LSPBindings bindings, LSPExecutor.Lane lane, Runnable r) {
+        bindings.getExecutor().post(lane, r);
+    }
+
+    private static void scheduleBackgroundTask(Dispatch dispatch) {
+        dispatch.req.schedule(DELAY);
     }
 
     public static synchronized void rescheduleBackgroundTask(FileObject file, BackgroundTask task) {
-        RequestProcessor.Task req = backgroundTasksMapFor(file).get(task);
+        Dispatch dispatch = backgroundTasksMapFor(file).get(task);
 
-        if (req != null) {
-            WORKER.post(req, DELAY);
+        if (dispatch != null) {
+            scheduleBackgroundTask(dispatch);
         }
     }
 
@@ -85,10 +86,49 @@ public class LSPWorkingPool {
         backgroundTasksMapFor(file).values().stream().forEach(LSPWorkingPool::scheduleBackgroundTask);
     }
 
-    private static Map<BackgroundTask, RequestProcessor.Task> backgroundTasksMapFor(FileObject file) {
+    private static Map<BackgroundTask, Dispatch> backgroundTasksMapFor(FileObject file) {
         return backgroundTasks.computeIfAbsent(file, f -> new IdentityHashMap<>());
     }
     
+    /**
+     * The (delayed) dispatch of a background task runs in the shared worker and
+     * only resolves the server. The task itself is run in the background lane
+     * of the server, at most once queued there.
+     */
+    private static final class Dispatch implements Runnable {
+        private final FileObject file;
+        private final BackgroundTask task;
+        private final RequestProcessor.Task req;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Dispatch(FileObject file, BackgroundTask task) {
+            this.file = file;
+            this.task = task;
+            this.req = WORKER.create(this);
+        }
+
+        @Override
+        public void run() {
+            LSPBindings bindings = LSPBindingFactory.getBindingForFile(file);
+
+            if (bindings == null || !queued.compareAndSet(false, true))
+                return ;
+
+            bindings.getExecutor().post(LSPExecutor.Lane.BACKGROUND, () -> {
+                queued.set(false);
+                if (!cancelled) {
+                    TextDocumentSyncServerCapabilityHandler.flushPendingChanges(file);
+                    task.run(bindings, file);
+                }
+            });
+        }
+
+        private void cancel() {
+            cancelled = true;
+            req.cancel();
+        }
+    }
     
     
     public interface BackgroundTask {
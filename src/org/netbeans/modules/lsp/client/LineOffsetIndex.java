@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client;
+
+import java.util.Arrays;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import org.eclipse.lsp4j.Position;
+import org.netbeans.lib.editor.util.swing.DocumentListenerPriority;
+import org.netbeans.lib.editor.util.swing.DocumentUtilities;
+import org.openide.util.Exceptions;
+
+/**
+ * Start offsets of the lines of a document, used to convert between LSP
+ * {@link Position}s and document offsets. The index is built once and then
+ * updated from the document events. Both, document offsets and LSP
+ * characters, count UTF-16 code units, so the character of a position is
+ * just the distance to the line start.
+ *
+ * @author ranSprd
+ */
+final class LineOffsetIndex implements DocumentListener {
+
+    private final Document doc;
+    private int[] lineStarts = new int[16];
+    private int lineCount;
+    // length of the indexed text, -1 if the index is not built yet
+    private int length = -1;
+    // last found line, lookups of increasing offsets are mostly answered without searching
+    private int lastLine;
+
+    private LineOffsetIndex(Document doc) {
+        this.doc = doc;
+    }
+
+    static LineOffsetIndex forDocument(Document doc) {
+        synchronized (LineOffsetIndex.class) {
+            LineOffsetIndex index = (LineOffsetIndex) doc.getProperty(LineOffsetIndex.class);
+
+            if (index == null) {
+                index = new LineOffsetIndex(doc);
+                doc.putProperty(LineOffsetIndex.class, index);
+                // before all other listeners, they may already convert positions
+                DocumentUtilities.addDocumentListener(doc, index, DocumentListenerPriority.FIRST);
+            }
+
+            return index;
+        }
+    }
+
+    Position createPosition(int offset) throws BadLocationException {
+        ensureValid();
+        synchronized (this) {
+            if (offset < 0 || offset > length) {
+                throw new BadLocationException("Invalid offset", offset);
+            }
+            int line = findLine(offset);
+            return new Position(line, offset - lineStarts[line]);
+        }
+    }
+
+    /**
+     * convert all offsets in one pass, sorted offsets are converted without searching
+     */
+    Position[] createPositions(int[] offsets) throws BadLocationException {
+        ensureValid();
+        synchronized (this) {
+            Position[] result = new Position[offsets.length];
+            for (int i = 0; i < offsets.length; i++) {
+                int offset = offsets[i];
+                if (offset < 0 || offset > length) {
+                    throw new BadLocationException("Invalid offset", offset);
+                }
+                int line = findLine(offset);
+                result[i] = new Position(line, offset - lineStarts[line]);
+            }
+            return result;
+        }
+    }
+
+    int getOffset(Position pos) {
+        ensureValid();
+        synchronized (this) {
+            return toOffset(pos);
+        }
+    }
+
+    /**
+     * @param positions positions to convert
+     * @return offsets of the given positions, in the same order
+     */
+    int[] getOffsets(Position... positions) {
+        ensureValid();
+        synchronized (this) {
+            int[] result = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                result[i] = toOffset(positions[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * a character beyond the end of the line means the end of the line, as defined by the protocol
+     */
+    private int toOffset(Position pos) {
+        int line = pos.getLine();
+
+        if (line < 0) {
+            return 0;
+        }
+        if (line >= lineCount) {
+            return length;
+        }
+
+        int start = lineStarts[line];
+        // the line end is before the line break
+        int end = line + 1 < lineCount ? lineStarts[line + 1] - 1 : length;
+
+        return start + Math.max(0, Math.min(pos.getCharacter(), end - start));
+    }
+
+    private int findLine(int offset) {
+        int hint = lastLine < lineCount ? lastLine : 0;
+
+        if (lineStarts[hint] <= offset) {
+            if (hint + 1 >= lineCount || offset < lineStarts[hint + 1]) {
+                return hint;
+            }
+            if (hint + 2 >= lineCount || offset < lineStarts[hint + 2]) {
+                return lastLine = hint + 1;
+            }
+        }
+
+        int idx = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+
+        return lastLine = idx >= 0 ? idx : -idx - 2;
+    }
+
+    private void ensureValid() {
+        synchronized (this) {
+            if (length == doc.getLength()) {
+                return ;
+            }
+        }
+        // the document lock is always taken before the lock of the index
+        doc.render(() -> {
+            synchronized (this) {
+                if (length != doc.getLength()) {
+                    rebuild();
+                }
+            }
+        });
+    }
+
+    private void rebuild() {
+        int len = doc.getLength();
+        Segment segment = new Segment();
+        segment.setPartialReturn(true);
+
+        lineCount = 0;
+        addLineStart(0);
+        try {
+            int offset = 0;
+            while (offset < len) {
+                doc.getText(offset, len - offset, segment);
+                for (int i = 0; i < segment.count; i++) {
+                    if (segment.array[segment.offset + i] == '\n') {
+                        addLineStart(offset + i + 1);
+                    }
+                }
+                offset += segment.count;
+            }
+        } catch (BadLocationException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        length = len;
+        lastLine = 0;
+    }
+
+    private void addLineStart(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    @Override
+    public synchronized void insertUpdate(DocumentEvent e) {
+        if (length == -1) {
+            return ;
+        }
+
+        int offset = e.getOffset();
+        int len = e.getLength();
+        String text;
+
+        try {
+            text = doc.getText(offset, len);
+        } catch (BadLocationException ex) {
+            length = -1;
+            return ;
+        }
+
+        int newLines = 0;
+        for (int i = 0; i < len; i++) {
+            if (text.charAt(i) == '\n') {
+                newLines++;
+            }
+        }
+
+        int line = findLine(offset);
+
+        if (lineCount + newLines > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(lineStarts.length * 2, lineCount + newLines));
+        }
+        System.arraycopy(lineStarts, line + 1, lineStarts, line + 1 + newLines, lineCount - line - 1);
+        lineCount += newLines;
+        for (int i = line + 1 + newLines; i < lineCount; i++) {
+            lineStarts[i] += len;
+        }
+        int next = line + 1;
+        for (int i = 0; i < len; i++) {
+            if (text.charAt(i) == '\n') {
+                lineStarts[next++] = offset + i + 1;
+            }
+        }
+        length += len;
+    }
+
+    @Override
+    public synchronized void removeUpdate(DocumentEvent e) {
+        if (length == -1) {
+            return ;
+        }
+
+        int offset = e.getOffset();
+        int len = e.getLength();
+        int first = findLine(offset) + 1;
+        int last = first;
+
+        // lines starting inside of the removed text are gone
+        while (last < lineCount && lineStarts[last] <= offset + len) {
+            last++;
+        }
+        System.arraycopy(lineStarts, last, lineStarts, first, lineCount - last);
+        lineCount -= last - first;
+        for (int i = first; i < lineCount; i++) {
+            lineStarts[i] -= len;
+        }
+        length -= len;
+        lastLine = 0;
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
+}
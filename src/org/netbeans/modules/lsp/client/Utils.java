@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 import javax.swing.SwingUtilities;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
@@ -46,10 +47,9 @@ import org.eclipse.lsp4j.TextDocumentEdit;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
-import org.netbeans.api.editor.document.LineDocument;
-import org.netbeans.api.editor.document.LineDocumentUtils;
 import org.netbeans.lib.editor.util.swing.DocumentUtilities;
 import org.netbeans.modules.editor.indent.api.IndentUtils;
+import org.netbeans.modules.lsp.client.bindings.TextDocumentSyncServerCapabilityHandler;
 import org.openide.cookies.EditorCookie;
 import org.openide.cookies.LineCookie;
 import org.openide.filesystems.FileObject;
@@ -72,12 +72,32 @@ public class Utils {
     }
 
     public static Position createPosition(Document doc, int offset) throws BadLocationException {
-         return new Position(LineDocumentUtils.getLineIndex((LineDocument) doc, offset),
-                             offset - LineDocumentUtils.getLineStart((LineDocument) doc, offset));
+        return LineOffsetIndex.forDocument(doc).createPosition(offset);
+    }
+
+    /**
+     * Convert several offsets at once, sorted offsets are converted in a single pass.
+     */
+    public static Position[] createPositions(Document doc, int... offsets) throws BadLocationException {
+        return LineOffsetIndex.forDocument(doc).createPositions(offsets);
     }
 
     public static int getOffset(Document doc, Position pos) {
-        return LineDocumentUtils.getLineStartFromIndex((LineDocument) doc, pos.getLine()) + pos.getCharacter();
+        return LineOffsetIndex.forDocument(doc).getOffset(pos);
+    }
+
+    /**
+     * Convert the start and end positions of the given ranges at once.
+     *
+     * @return array with start and end offset of each range, i.e. {@code [start0, end0, start1, end1, ...]}
+     */
+    public static int[] getOffsets(Document doc, List<Range> ranges) {
+        Position[] positions = new Position[ranges.size() * 2];
+        for (int i = 0; i < ranges.size(); i++) {
+            positions[2 * i] = ranges.get(i).getStart();
+            positions[2 * i + 1] = ranges.get(i).getEnd();
+        }
+        return LineOffsetIndex.forDocument(doc).getOffsets(positions);
     }
 
     public static void applyWorkspaceEdit(WorkspaceEdit edit) {
@@ -148,6 +168,11 @@ public class Utils {
      * Apply edits to the document. The edits can be filtered to only cover
      * parts of the documents.
      *
+     * Adjacent and overlapping edits are merged, only the part of each merged
+     * edit that actually differs from the document is modified and edits not
+     * changing the document are skipped. The server is sent a single change
+     * for all the edits.
+     *
      * @param doc        {@link Document} the edits shall be applied to
      * @param edits      list {@link TextEdit} to apply
      * @param startLimit if not {@code null} only edits with a {@code start}
@@ -160,22 +185,105 @@ public class Utils {
      *                   document.
      */
     public static void applyEditsNoLock(Document doc, List<? extends TextEdit> edits, Integer startLimit, Integer endLimit) {
-        edits
-         .stream()
-         .sorted(rangeReverseSort)
-         .forEach(te -> {
-            try {
-                int start = Utils.getOffset(doc, te.getRange().getStart());
-                int end = Utils.getOffset(doc, te.getRange().getEnd());
-                if ((startLimit == null || start >= startLimit)
-                    && (endLimit == null || end < endLimit)) {
-                    doc.remove(start, end - start);
-                    doc.insertString(start, te.getNewText(), null);
+        // the offsets of the original document are converted at once
+        int[] offsets = getOffsets(doc, edits.stream().map(TextEdit::getRange).collect(Collectors.toList()));
+        List<Replacement> replacements = new ArrayList<>();
+        int length = doc.getLength();
+        for (int i = 0; i < edits.size(); i++) {
+            // ranges reaching past the end of the document end at its end
+            int start = Math.max(0, Math.min(offsets[2 * i], length));
+            int end = Math.max(start, Math.min(offsets[2 * i + 1], length));
+            if ((startLimit == null || start >= startLimit)
+                && (endLimit == null || end < endLimit)) {
+                String newText = edits.get(i).getNewText();
+                replacements.add(new Replacement(start, end, newText != null ? newText : ""));
+            }
+        }
+        // stable sort, inserts at the same offset keep their order
+        replacements.sort(Comparator.comparingInt((Replacement r) -> r.start).thenComparingInt(r -> r.end));
+
+        List<Replacement> minimal = minimizeReplacements(DocumentUtilities.getText(doc), replacements);
+
+        if (minimal.isEmpty()) {
+            return ;
+        }
+
+        int changeStart = minimal.get(0).start;
+        int changeEnd = minimal.get(minimal.size() - 1).end;
+
+        TextDocumentSyncServerCapabilityHandler.runAsSingleChange(doc, changeStart, changeEnd, () -> {
+            // applied from the end of the document, the original offsets stay valid
+            for (int i = minimal.size() - 1; i >= 0; i--) {
+                Replacement r = minimal.get(i);
+                try {
+                    if (r.end > r.start) {
+                        doc.remove(r.start, r.end - r.start);
+                    }
+                    if (!r.text.isEmpty()) {
+                        doc.insertString(r.start, r.text, null);
+                    }
+                } catch (BadLocationException ex) {
+                    Exceptions.printStackTrace(ex);
                 }
-            } catch (BadLocationException ex) {
-                Exceptions.printStackTrace(ex);
             }
-         });
+        });
+    }
+
+    /**
+     * Merge adjacent and overlapping replacements and reduce each of them to
+     * the part differing from the current text.
+     *
+     * @param replacements sorted by start offset
+     * @return replacements modifying the text, sorted by start offset
+     */
+    private static List<Replacement> minimizeReplacements(CharSequence text, List<Replacement> replacements) {
+        List<Replacement> merged = new ArrayList<>();
+
+        for (Replacement r : replacements) {
+            Replacement last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && r.start <= last.end) {
+                merged.set(merged.size() - 1, new Replacement(last.start, Math.max(last.end, r.end), last.text + r.text));
+            } else {
+                merged.add(r);
+            }
+        }
+
+        List<Replacement> result = new ArrayList<>();
+
+        for (Replacement r : merged) {
+            int oldLength = r.end - r.start;
+            int newLength = r.text.length();
+            int prefix = 0;
+            while (prefix < oldLength && prefix < newLength && text.charAt(r.start + prefix) == r.text.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < oldLength - prefix && suffix < newLength - prefix
+                   && text.charAt(r.end - suffix - 1) == r.text.charAt(newLength - suffix - 1)) {
+                suffix++;
+            }
+            if (prefix == oldLength && prefix == newLength) {
+                //no-op
+                continue;
+            }
+            result.add(new Replacement(r.start + prefix, r.end - suffix, r.text.substring(prefix, newLength - suffix)));
+        }
+
+        return result;
+    }
+
+    private static final class Replacement {
+
+        private final int start;
+        private final int end;
+        private final String text;
+
+        public Replacement(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
     }
 
     public static void applyCodeAction(LSPBindings server, Either<Command, CodeAction> cmd) {
@@ -199,8 +307,9 @@ public class Utils {
     public static Position computeEndPositionForRemovedText(Position startPos, String removedText) {
         int endLine = startPos.getLine();
         int endChar = startPos.getCharacter();
-        for (char c : removedText.toCharArray()) {
-            if (c == '\n') {
+        // called for every removal, the text is not copied
+        for (int i = 0; i < removedText.length(); i++) {
+            if (removedText.charAt(i) == '\n') {
                 endLine++;
                 endChar = 0;
             } else {
@@ -276,18 +385,6 @@ public class Utils {
         }
     }
 
-    private static final Comparator<TextEdit> rangeReverseSort = (s1, s2) -> {
-        int l1 = s1.getRange().getEnd().getLine();
-        int l2 = s2.getRange().getEnd().getLine();
-        int c1 = s1.getRange().getEnd().getCharacter();
-        int c2 = s2.getRange().getEnd().getCharacter();
-        if (l1 != l2) {
-            return l2 - l1;
-        } else {
-            return c2 - c1;
-        }
-    };
-
     public static boolean isTrue(Boolean b) {
         return b != null && b;
     }
@@ -52,6 +52,7 @@ import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
 import org.netbeans.modules.lsp.client.LSPWorkingPool.BackgroundTask;
 import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.modules.lsp.client.bindings.symbols.SymbolIndex;
 import org.openide.filesystems.FileObject;
 import org.openide.loaders.DataObject;
 import org.openide.loaders.DataObjectNotFoundException;
@@ -84,9 +85,17 @@ public class BreadcrumbsImpl implements BackgroundTask {
     @Override
     public void run(LSPBindings bindings, FileObject file) {
         try {
-            //TODO: modified while the query is running?
+            DocumentVersions versions = DocumentVersions.forDocument(doc);
+            long stamp = versions.stamp();
             List<Either<SymbolInformation, DocumentSymbol>> symbols = bindings.getTextDocumentService().documentSymbol(new DocumentSymbolParams(new TextDocumentIdentifier(Utils.toURI(file)))).get();
 
+            if (!versions.isCurrent(stamp)) {
+                //modified while the query was running, will be recomputed
+                return ;
+            }
+
+            SymbolIndex.documentSymbols(Utils.toURI(file), symbols);
+
             this.rootElement = new RootBreadcrumbsElementImpl(file, doc, symbols.stream().map(this::toDocumentSymbol).collect(Collectors.toList()));
 
             SwingUtilities.invokeLater(() -> update());
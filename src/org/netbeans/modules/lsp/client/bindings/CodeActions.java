@@ -61,6 +61,7 @@ public class CodeActions implements CodeGenerator.Factory {
         if (server == null) {
             return Collections.emptyList();
         }
+        TextDocumentSyncServerCapabilityHandler.flushPendingChanges(component.getDocument());
         String uri = Utils.toURI(file);
         try {
             List<Either<Command, CodeAction>> commands =
@@ -26,18 +26,15 @@ import java.awt.Graphics;
 import java.awt.event.KeyEvent;
 import java.net.URL;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import javax.swing.Action;
-import javax.swing.Icon;
-import javax.swing.ImageIcon;
 import javax.swing.JToolTip;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import javax.swing.text.StyledDocument;
 import org.eclipse.lsp4j.CompletionItem;
-import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionOptions;
 import org.eclipse.lsp4j.CompletionParams;
@@ -57,6 +54,7 @@ import org.netbeans.editor.Utilities;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPRequests;
 import org.netbeans.modules.lsp.client.Utils;
 import org.netbeans.modules.lsp.client.model.LSPInitializeResult;
 import org.netbeans.modules.lsp.client.model.LSPServerCapabilities;
@@ -70,7 +68,6 @@ import org.netbeans.spi.editor.completion.support.CompletionUtilities;
 import org.openide.filesystems.FileObject;
 import org.openide.text.NbDocument;
 import org.openide.util.Exceptions;
-import org.openide.util.ImageUtilities;
 import org.openide.xml.XMLUtil;
 
 /**
@@ -96,11 +93,13 @@ public class CompletionProviderImpl implements CompletionProvider {
                         if (server == null) {
                             return ;
                         }
+                        TextDocumentSyncServerCapabilityHandler.flushPendingChanges(doc);
                         String uri = Utils.toURI(file);
                         SignatureHelpParams params;
                         params = new SignatureHelpParams(new TextDocumentIdentifier(uri),
                                 Utils.createPosition(doc, caretOffset));
-                        SignatureHelp help = server.getTextDocumentService().signatureHelp(params).get();
+                        SignatureHelp help = LSPRequests.get(LSPRequests.track(component, "signatureHelp", server.getTextDocumentService().signatureHelp(params)),
+                                                             this::isTaskCancelled);
                         if (help == null || help.getSignatures().isEmpty()) {
                             return ;
                         }
@@ -132,6 +131,8 @@ public class CompletionProviderImpl implements CompletionProvider {
                         resultSet.setToolTip(tip);
                     } catch (BadLocationException | InterruptedException ex) {
                         Exceptions.printStackTrace(ex);
+                    } catch (CancellationException ex) {
+                        //superseded by a newer request
                     } catch (ExecutionException ex) {
                         Exceptions.printStackTrace(ex);
                     } finally {
@@ -153,202 +154,244 @@ public class CompletionProviderImpl implements CompletionProvider {
                     if (server == null) {
                         return ;
                     }
-                    String uri = Utils.toURI(file);
-                    CompletionParams params;
-                    params = new CompletionParams(new TextDocumentIdentifier(uri),
-                            Utils.createPosition(doc, caretOffset));
-                    CountDownLatch l = new CountDownLatch(1);
-                    //TODO: Location or Location[]
-                    Either<List<CompletionItem>, CompletionList> completionResult = server.getTextDocumentService().completion(params).get();
-                    if (completionResult == null) {
-                        return ; //no results
-                    }
-                    List<CompletionItem> items;
-                    System.out.println("COMPLETION :\n" +completionResult);
-                    boolean incomplete;
-                    if (completionResult.isLeft()) {
-                        items = completionResult.getLeft();
-                        incomplete = true;
-                    } else {
-                        items = completionResult.getRight().getItems();
-                        incomplete = completionResult.getRight().isIncomplete();
+                    int[] identSpan = Utilities.getIdentifierBlock((BaseDocument) doc, caretOffset);
+                    int prefixStart = identSpan != null ? identSpan[0] : caretOffset;
+                    String prefix = doc.getText(prefixStart, caretOffset - prefixStart);
+                    CompletionResultCache cache = CompletionResultCache.forDocument(doc);
+                    // a complete result is refined locally while the identifier is typed
+                    List<CompletionItem> items = cache.get(prefixStart, prefix);
+                    if (items == null) {
+                        TextDocumentSyncServerCapabilityHandler.flushPendingChanges(doc);
+                        String uri = Utils.toURI(file);
+                        CompletionParams params;
+                        params = new CompletionParams(new TextDocumentIdentifier(uri),
+                                Utils.createPosition(doc, caretOffset));
+                        //TODO: Location or Location[]
+                        Either<List<CompletionItem>, CompletionList> completionResult = LSPRequests.get(LSPRequests.track(component, "completion", server.getTextDocumentService().completion(params)),
+                                                                                                        this::isTaskCancelled);
+                        if (completionResult == null) {
+                            return ; //no results
+                        }
+                        boolean incomplete;
+                        if (completionResult.isLeft()) {
+                            items = completionResult.getLeft();
+                            // a plain array is a complete result
+                            incomplete = false;
+                        } else {
+                            items = completionResult.getRight().getItems();
+                            incomplete = completionResult.getRight().isIncomplete();
+                        }
+                        cache.put(prefixStart, prefix, items, incomplete);
                     }
                     for (CompletionItem completionItem : items) {
-                        String insert = completionItem.getInsertText() != null ? completionItem.getInsertText() : completionItem.getLabel();
-                        String leftLabel = encode(completionItem.getLabel());
-                        String rightLabel;
-                        if (completionItem.getDetail() != null) {
-                            rightLabel = encode(completionItem.getDetail());
+                        resultSet.addItem(createItem(component, doc, caretOffset, server, completionItem));
+                    }
+                } catch (BadLocationException | InterruptedException ex) {
+                    Exceptions.printStackTrace(ex);
+                } catch (CancellationException ex) {
+                    //superseded by a newer request
+                } catch (ExecutionException ex) {
+                    Exceptions.printStackTrace(ex);
+                } finally {
+                    resultSet.finish();
+                }
+            }
+        }, component);
+    }
+    
+    /**
+     * the item factory, package private for the benchmarks
+     */
+    org.netbeans.spi.editor.completion.CompletionItem createItem(JTextComponent component, Document doc, int caretOffset, LSPBindings server, CompletionItem completionItem) {
+        String insert = completionItem.getInsertText() != null ? completionItem.getInsertText() : completionItem.getLabel();
+        String sortText = completionItem.getSortText() != null ? completionItem.getSortText() : completionItem.getLabel();
+        return new org.netbeans.spi.editor.completion.CompletionItem() {
+            // the labels are encoded only for items which are displayed
+            private String leftLabel;
+            private String rightLabel;
+
+            private void encodeLabels() {
+                if (leftLabel == null) {
+                    leftLabel = encode(completionItem.getLabel());
+                    if (completionItem.getDetail() != null) {
+                        rightLabel = encode(completionItem.getDetail());
+                    }
+                }
+            }
+
+            @Override
+            public void defaultAction(JTextComponent jtc) {
+                commit("");
+            }
+            private void commit(String appendText) {
+                Either<TextEdit, InsertReplaceEdit> x = completionItem.getTextEdit();
+                TextEdit te = (x!=null)?x.getLeft():null;
+                NbDocument.runAtomic((StyledDocument) doc, () -> {
+                    try {
+                        int endPos;
+                        if (te != null) {
+                            int start = Utils.getOffset(doc, te.getRange().getStart());
+                            // a locally refined result was computed for a shorter prefix
+                            int end = Math.max(Utils.getOffset(doc, te.getRange().getEnd()), caretOffset);
+                            doc.remove(start, end - start);
+                            doc.insertString(start, te.getNewText(), null);
+                            endPos = start + te.getNewText().length();
                         } else {
-                            rightLabel = null;
-                        }
-                        String sortText = completionItem.getSortText() != null ? completionItem.getSortText() : completionItem.getLabel();
-                        CompletionItemKind kind = completionItem.getKind();
-                        Icon ic = Icons.getCompletionIcon(kind);
-                        ImageIcon icon = new ImageIcon(ImageUtilities.icon2Image(ic));
-                        resultSet.addItem(new org.netbeans.spi.editor.completion.CompletionItem() {
-                            @Override
-                            public void defaultAction(JTextComponent jtc) {
-                                commit("");
-                            }
-                            private void commit(String appendText) {
-                                Either<TextEdit, InsertReplaceEdit> x = completionItem.getTextEdit();
-                                TextEdit te = (x!=null)?x.getLeft():null;
-                                NbDocument.runAtomic((StyledDocument) doc, () -> {
-                                    try {
-                                        int endPos;
-                                        if (te != null) {
-                                            int start = Utils.getOffset(doc, te.getRange().getStart());
-                                            int end = Utils.getOffset(doc, te.getRange().getEnd());
-                                            doc.remove(start, end - start);
-                                            doc.insertString(start, te.getNewText(), null);
-                                            endPos = start + te.getNewText().length();
-                                        } else {
-                                            String toAdd = completionItem.getInsertText();
-                                            if (toAdd == null) {
-                                                toAdd = completionItem.getLabel();
-                                            }
-                                            int[] identSpan = Utilities.getIdentifierBlock((BaseDocument) doc, caretOffset);
-                                            String printSuffix = toAdd.substring(identSpan != null ? caretOffset - identSpan[0] : 0);
-                                            doc.insertString(caretOffset, printSuffix, null);
-                                            endPos = caretOffset + printSuffix.length();
-                                        }
-                                        doc.insertString(endPos, appendText, null);
-                                    } catch (BadLocationException ex) {
-                                        Exceptions.printStackTrace(ex);
-                                    }
-                                });
-                                Completion.get().hideDocumentation();
-                                Completion.get().hideCompletion();
+                            String toAdd = completionItem.getInsertText();
+                            if (toAdd == null) {
+                                toAdd = completionItem.getLabel();
                             }
+                            int[] identSpan = Utilities.getIdentifierBlock((BaseDocument) doc, caretOffset);
+                            String printSuffix = toAdd.substring(identSpan != null ? caretOffset - identSpan[0] : 0);
+                            doc.insertString(caretOffset, printSuffix, null);
+                            endPos = caretOffset + printSuffix.length();
+                        }
+                        doc.insertString(endPos, appendText, null);
+                    } catch (BadLocationException ex) {
+                        Exceptions.printStackTrace(ex);
+                    }
+                });
+                Completion.get().hideDocumentation();
+                Completion.get().hideCompletion();
+            }
 
-                            @Override
-                            public void processKeyEvent(KeyEvent ke) {
-                                if (ke.getID() == KeyEvent.KEY_TYPED) {
-                                    String commitText = String.valueOf(ke.getKeyChar());
-                                    List<String> commitCharacters = completionItem.getCommitCharacters();
+            @Override
+            public void processKeyEvent(KeyEvent ke) {
+                if (ke.getID() == KeyEvent.KEY_TYPED) {
+                    String commitText = String.valueOf(ke.getKeyChar());
+                    List<String> commitCharacters = completionItem.getCommitCharacters();
 
-                                    if (commitCharacters != null && commitCharacters.contains(commitText)) {
-                                        commit(commitText);
-                                        ke.consume();
-                                        if (isTriggerCharacter(server, commitText)) {
-                                            Completion.get().showCompletion();
-                                        }
-                                    }
-                                }
-                            }
+                    if (commitCharacters != null && commitCharacters.contains(commitText)) {
+                        commit(commitText);
+                        ke.consume();
+                        if (isTriggerCharacter(server, commitText)) {
+                            Completion.get().showCompletion();
+                        }
+                    }
+                }
+            }
 
-                            @Override
-                            public int getPreferredWidth(Graphics grphcs, Font font) {
-                                return CompletionUtilities.getPreferredWidth(leftLabel, rightLabel, grphcs, font);
-                            }
+            @Override
+            public int getPreferredWidth(Graphics grphcs, Font font) {
+                encodeLabels();
+                return CompletionUtilities.getPreferredWidth(leftLabel, rightLabel, grphcs, font);
+            }
 
-                            @Override
-                            public void render(Graphics grphcs, Font font, Color color, Color color1, int i, int i1, boolean bln) {
-                                CompletionUtilities.renderHtml(icon, leftLabel, rightLabel, grphcs, font, color, i, i1, bln);
-                            }
+            @Override
+            public void render(Graphics grphcs, Font font, Color color, Color color1, int i, int i1, boolean bln) {
+                encodeLabels();
+                CompletionUtilities.renderHtml(Icons.getCompletionIcon(completionItem.getKind()), leftLabel, rightLabel, grphcs, font, color, i, i1, bln);
+            }
 
-                            @Override
-                            public CompletionTask createDocumentationTask() {
-                                return new AsyncCompletionTask(new AsyncCompletionQuery() {
-                                    @Override
-                                    protected void query(CompletionResultSet resultSet, Document doc, int caretOffset) {
-                                        CompletionItem resolved;
-                                        if ((completionItem.getDetail() == null || completionItem.getDocumentation() == null) && hasCompletionResolve(server)) {
-                                            CompletionItem temp;
-                                            try {
-                                                temp = server.getTextDocumentService().resolveCompletionItem(completionItem).get();
-                                            } catch (InterruptedException | ExecutionException ex) {
-                                                Exceptions.printStackTrace(ex);
-                                                temp = completionItem;
-                                            }
-                                            resolved = temp;
+            @Override
+            public CompletionTask createDocumentationTask() {
+                return new AsyncCompletionTask(new AsyncCompletionQuery() {
+                    @Override
+                    protected void query(CompletionResultSet resultSet, Document doc, int caretOffset) {
+                        CompletionItem resolved;
+                        if ((completionItem.getDetail() == null || completionItem.getDocumentation() == null) && hasCompletionResolve(server)) {
+                            CompletionItem temp;
+                            try {
+                                temp = LSPRequests.get(LSPRequests.track(component, "resolveCompletionItem", server.getTextDocumentService().resolveCompletionItem(completionItem)),
+                                                       this::isTaskCancelled);
+                            } catch (InterruptedException | ExecutionException ex) {
+                                Exceptions.printStackTrace(ex);
+                                temp = completionItem;
+                            } catch (CancellationException ex) {
+                                //superseded by a newer request
+                                temp = completionItem;
+                            }
+                            resolved = temp;
+                        } else {
+                            resolved = completionItem;
+                        }
+                        if (resolved.getDocumentation() != null || resolved.getDetail() != null) {
+                            resultSet.setDocumentation(new CompletionDocumentation() {
+                                @Override
+                                public String getText() {
+                                    StringBuilder documentation = new StringBuilder();
+                                    documentation.append("<html>\n");
+                                    if (resolved.getDetail() != null) {
+                                        documentation.append("<b>").append(escape(resolved.getDetail())).append("</b>");
+                                        documentation.append("\n<p>");
+                                    }
+                                    if (resolved.getDocumentation() != null) {
+                                        MarkupContent content;
+                                        if (resolved.getDocumentation().isLeft()) {
+                                            content = new MarkupContent();
+                                            content.setKind("plaintext");
+                                            content.setValue(resolved.getDocumentation().getLeft());
                                         } else {
-                                            resolved = completionItem;
+                                            content = resolved.getDocumentation().getRight();
                                         }
-                                        if (resolved.getDocumentation() != null || resolved.getDetail() != null) {
-                                            resultSet.setDocumentation(new CompletionDocumentation() {
-                                                @Override
-                                                public String getText() {
-                                                    StringBuilder documentation = new StringBuilder();
-                                                    documentation.append("<html>\n");
-                                                    if (resolved.getDetail() != null) {
-                                                        documentation.append("<b>").append(escape(resolved.getDetail())).append("</b>");
-                                                        documentation.append("\n<p>");
-                                                    }
-                                                    if (resolved.getDocumentation() != null) {
-                                                        MarkupContent content;
-                                                        if (resolved.getDocumentation().isLeft()) {
-                                                            content = new MarkupContent();
-                                                            content.setKind("plaintext");
-                                                            content.setValue(resolved.getDocumentation().getLeft());
-                                                        } else {
-                                                            content = resolved.getDocumentation().getRight();
-                                                        }
-                                                        switch (content.getKind()) {
-                                                            default:
-                                                            case "plaintext": documentation.append("<pre>\n").append(content.getValue()).append("\n</pre>"); break;
-                                                            case "markdown": documentation.append(HtmlRenderer.builder().build().render(Parser.builder().build().parse(content.getValue()))); break;
-                                                        }
-                                                    }
-                                                    return documentation.toString();
-                                                }
-                                                @Override
-                                                public URL getURL() {
-                                                    return null;
-                                                }
-                                                @Override
-                                                public CompletionDocumentation resolveLink(String link) {
-                                                    return null;
-                                                }
-                                                @Override
-                                                public Action getGotoSourceAction() {
-                                                    return null;
-                                                }
-                                            });
+                                        switch (content.getKind()) {
+                                            default:
+                                            case "plaintext": documentation.append("<pre>\n").append(content.getValue()).append("\n</pre>"); break;
+                                            case "markdown": documentation.append(HtmlRenderer.builder().build().render(Parser.builder().build().parse(content.getValue()))); break;
                                         }
-                                        resultSet.finish();
                                     }
-                                });
-                            }
+                                    return documentation.toString();
+                                }
+                                @Override
+                                public URL getURL() {
+                                    return null;
+                                }
+                                @Override
+                                public CompletionDocumentation resolveLink(String link) {
+                                    return null;
+                                }
+                                @Override
+                                public Action getGotoSourceAction() {
+                                    return null;
+                                }
+                            });
+                        }
+                        resultSet.finish();
+                    }
+                });
+            }
 
-                            @Override
-                            public CompletionTask createToolTipTask() {
-                                return null;
-                            }
+            @Override
+            public CompletionTask createToolTipTask() {
+                return null;
+            }
 
-                            @Override
-                            public boolean instantSubstitution(JTextComponent jtc) {
-                                return false;
-                            }
+            @Override
+            public boolean instantSubstitution(JTextComponent jtc) {
+                return false;
+            }
 
-                            @Override
-                            public int getSortPriority() {
-                                return 100;
-                            }
+            @Override
+            public int getSortPriority() {
+                return 100;
+            }
 
-                            @Override
-                            public CharSequence getSortText() {
-                                return sortText;
-                            }
+            @Override
+            public CharSequence getSortText() {
+                return sortText;
+            }
 
-                            @Override
-                            public CharSequence getInsertPrefix() {
-                                return insert;
-                            }
-                        });
-                    }
-                } catch (BadLocationException | InterruptedException ex) {
-                    Exceptions.printStackTrace(ex);
-                } catch (ExecutionException ex) {
-                    Exceptions.printStackTrace(ex);
-                } finally {
-                    resultSet.finish();
-                }
+            @Override
+            public CharSequence getInsertPrefix() {
+                return insert;
             }
-        }, component);
+        };
     }
-    
+
+    /**
+     * @return number of completion queries answered from the client side cache
+     */
+    public static long getCachedCompletionCount() {
+        return CompletionResultCache.getHitCount();
+    }
+
+    /**
+     * @return number of completion queries sent to the server
+     */
+    public static long getServerCompletionCount() {
+        return CompletionResultCache.getMissCount();
+    }
+
     private boolean hasCompletionResolve(LSPBindings server) {
         LSPServerCapabilities capabilities = server.getInitResult().getCapabilities();
         if (capabilities == null) {
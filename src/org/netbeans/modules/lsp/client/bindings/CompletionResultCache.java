@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import org.eclipse.lsp4j.CompletionItem;
+
+/**
+ * Last complete completion result of a document. While the user only types
+ * further characters of the identifier the completion was computed for, the
+ * result is refined locally and the server is not asked again. Any other
+ * modification of the document drops the result.
+ *
+ * @author ranSprd
+ */
+final class CompletionResultCache implements DocumentListener {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private List<CompletionItem> items;
+    private int start;
+    private String prefix;
+    // end of the identifier typed so far, modifications up to here keep the result
+    private int end;
+
+    private CompletionResultCache() {
+    }
+
+    static CompletionResultCache forDocument(Document doc) {
+        synchronized (CompletionResultCache.class) {
+            CompletionResultCache cache = (CompletionResultCache) doc.getProperty(CompletionResultCache.class);
+
+            if (cache == null) {
+                cache = new CompletionResultCache();
+                doc.putProperty(CompletionResultCache.class, cache);
+                doc.addDocumentListener(cache);
+            }
+
+            return cache;
+        }
+    }
+
+    /**
+     * remember the result, which was computed for the identifier prefix starting at {@code start}
+     */
+    synchronized void put(int start, String prefix, List<CompletionItem> items, boolean incomplete) {
+        if (incomplete) {
+            this.items = null;
+            return ;
+        }
+        this.items = items;
+        this.start = start;
+        this.prefix = prefix;
+        this.end = start + prefix.length();
+    }
+
+    /**
+     * @return the cached items matching the given prefix, or null if the server needs to be asked
+     */
+    synchronized List<CompletionItem> get(int start, String prefix) {
+        if (items == null || start != this.start || !prefix.startsWith(this.prefix) || start + prefix.length() != end) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        List<CompletionItem> result = new ArrayList<>();
+
+        for (CompletionItem item : items) {
+            String filterText = item.getFilterText() != null ? item.getFilterText() : item.getLabel();
+
+            if (matches(filterText, prefix)) {
+                result.add(item);
+            }
+        }
+
+        return result;
+    }
+
+    static long getHitCount() {
+        return hits.sum();
+    }
+
+    static long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * case insensitive fuzzy match: the first character has to match, the
+     * remaining characters of the prefix have to appear in the same order
+     */
+    static boolean matches(String text, String prefix) {
+        if (prefix.isEmpty()) {
+            return true;
+        }
+        if (text.isEmpty() || !sameChar(text.charAt(0), prefix.charAt(0))) {
+            return false;
+        }
+
+        int pos = 1;
+
+        for (int i = 1; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+
+            while (pos < text.length() && !sameChar(text.charAt(pos), c)) {
+                pos++;
+            }
+            if (pos == text.length()) {
+                return false;
+            }
+            pos++;
+        }
+
+        return true;
+    }
+
+    private static boolean sameChar(char c1, char c2) {
+        return c1 == c2 || Character.toLowerCase(c1) == Character.toLowerCase(c2);
+    }
+
+    @Override
+    public synchronized void insertUpdate(DocumentEvent e) {
+        if (items == null) {
+            return ;
+        }
+        if (e.getOffset() < start || e.getOffset() > end) {
+            items = null;
+        } else {
+            end += e.getLength();
+        }
+    }
+
+    @Override
+    public synchronized void removeUpdate(DocumentEvent e) {
+        // the server filtered the result by the longer prefix
+        items = null;
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
+}
@@ -18,24 +18,23 @@
  */
 package org.netbeans.modules.lsp.client.bindings;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.function.Consumer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
+import org.netbeans.modules.lsp.client.LSPWarmPool;
+import org.netbeans.modules.lsp.client.bindings.symbols.SymbolIndex;
 import org.netbeans.modules.parsing.spi.indexing.Context;
 import org.netbeans.modules.parsing.spi.indexing.CustomIndexer;
 import org.netbeans.modules.parsing.spi.indexing.CustomIndexerFactory;
 import org.netbeans.modules.parsing.spi.indexing.Indexable;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
-import org.openide.util.EditableProperties;
-import org.openide.util.Exceptions;
 import org.openide.util.RequestProcessor;
 
 /**
@@ -48,58 +47,65 @@ public class CustomIndexerImpl extends CustomIndexer {
 
     @Override
     protected void index(Iterable<? extends Indexable> files, Context context) {
-        handleStoredFiles(context, props -> {
-            FileObject root = context.getRoot();
-            for (Indexable i : files) {
-                FileObject file = root.getFileObject(i.getRelativePath());
-                if (file != null) {
-                    props.setProperty(i.getRelativePath(), FileUtil.getMIMEType(file));
-                }
-            }
+        symbolsChanged(files, context);
 
-            Set<String> mimeTypes = new HashSet<>(props.values());
-            Project prj = FileOwnerQuery.getOwner(root);
+        FileObject root = context.getRoot();
+        IndexedFiles indexed = IndexedFiles.forRoot(context.getRootURI(), context.getIndexFolder());
 
-            if (prj != null) {
-                WORKER.post(() -> {
-                    for (String mimeType : mimeTypes) {
-                        LSPBindingFactory.ensureServerRunning(prj, mimeType);
-                    }
-                });
-            }
-        });
-    }
-
-    private static final String INDEX_FILE_NAME = "index.properties";
+        if (root == null || indexed == null) {
+            return ;
+        }
 
-    private static void handleStoredFiles(Context context, Consumer<EditableProperties> handleProperties) {
-        EditableProperties props = new EditableProperties(true);
-        FileObject index = context.getIndexFolder().getFileObject(INDEX_FILE_NAME);
+        Map<String, String> path2MimeType = new HashMap<>();
 
-        if (index != null) {
-            try (InputStream in = index.getInputStream()) {
-                props.load(in);
-            } catch (IOException ex) {
-                //ignore...
+        for (Indexable i : files) {
+            FileObject file = root.getFileObject(i.getRelativePath());
+            if (file != null) {
+                path2MimeType.put(i.getRelativePath(), FileUtil.getMIMEType(file));
             }
         }
 
-        EditableProperties old = props.cloneProperties();
+        indexed.put(path2MimeType);
 
-        handleProperties.accept(props);
+        List<String> mimeTypes = indexed.getMimeTypes();
+        Project prj = FileOwnerQuery.getOwner(root);
 
-        if (!old.equals(props)) {
-            try {
-                if (index == null) {
-                    index = context.getIndexFolder().createData(INDEX_FILE_NAME);
+        if (prj != null) {
+            WORKER.post(() -> {
+                for (String mimeType : mimeTypes) {
+                    LSPBindingFactory.ensureServerRunning(prj, mimeType);
                 }
-                try (OutputStream out = index.getOutputStream()) {
-                    props.store(out);
-                }
-            } catch (IOException ex) {
-                Exceptions.printStackTrace(ex);
-            }
+            });
         }
+
+        LSPWarmPool.refill();
+    }
+
+    /**
+     * @return number of indexed files per MIME type
+     */
+    public static Map<String, Integer> getIndexedMimeTypeCounts() {
+        return IndexedFiles.getAllMimeTypeCounts();
+    }
+
+    /**
+     * the symbols of modified and deleted files are outdated, they are
+     * indexed again when the servers report them
+     */
+    private static void symbolsChanged(Iterable<? extends Indexable> files, Context context) {
+        FileObject root = context.getRoot();
+
+        if (root == null) {
+            return ;
+        }
+
+        List<String> relativePaths = new ArrayList<>();
+
+        for (Indexable i : files) {
+            relativePaths.add(i.getRelativePath());
+        }
+
+        SymbolIndex.forRoot(root, context.getIndexFolder()).filesChanged(relativePaths);
     }
 
     @MimeRegistration(mimeType="", service=CustomIndexerFactory.class)
@@ -115,17 +121,42 @@ public class CustomIndexerImpl extends CustomIndexer {
             return true;
         }
 
+        @Override
+        public boolean scanStarted(Context context) {
+            FileObject root = context.getRoot();
+
+            if (root != null) {
+                // load the symbols before the servers are started
+                SymbolIndex.forRoot(root, context.getIndexFolder());
+            }
+
+            return super.scanStarted(context);
+        }
+
+        @Override
+        public void rootsRemoved(Iterable<? extends URL> removedRoots) {
+            SymbolIndex.rootsRemoved(removedRoots);
+            IndexedFiles.rootsRemoved(removedRoots);
+        }
+
         @Override
         public void filesDeleted(Iterable<? extends Indexable> deleted, Context context) {
-            handleStoredFiles(context, props -> {
+            symbolsChanged(deleted, context);
+
+            IndexedFiles indexed = IndexedFiles.forRoot(context.getRootURI(), context.getIndexFolder());
+
+            if (indexed != null) {
+                List<String> relativePaths = new ArrayList<>();
                 for (Indexable d : deleted) {
-                    props.remove(d.getRelativePath());
+                    relativePaths.add(d.getRelativePath());
                 }
-            });
+                indexed.remove(relativePaths);
+            }
         }
 
         @Override
         public void filesDirty(Iterable<? extends Indexable> dirty, Context context) {
+            symbolsChanged(dirty, context);
         }
 
         @Override
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+/**
+ * Client side copy of a document's text for servers, which only support
+ * full text synchronization. The text is kept in a gap buffer which is
+ * updated from the document events, so the document doesn't need to be
+ * locked and copied for every modification. Not thread safe, the owner
+ * synchronizes the access.
+ *
+ * @author ranSprd
+ */
+final class DocumentTextMirror {
+
+    private static final int MIN_GAP = 64;
+
+    private char[] buffer;
+    private int gapStart;
+    private int gapEnd;
+    private String text;
+
+    DocumentTextMirror(String initialText) {
+        this.buffer = new char[initialText.length() + MIN_GAP];
+        initialText.getChars(0, initialText.length(), buffer, 0);
+        this.gapStart = initialText.length();
+        this.gapEnd = buffer.length;
+        this.text = initialText;
+    }
+
+    int length() {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    void insert(int offset, String inserted) {
+        int len = inserted.length();
+        moveGap(offset);
+        if (gapEnd - gapStart < len) {
+            growGap(len);
+        }
+        inserted.getChars(0, len, buffer, gapStart);
+        gapStart += len;
+        text = null;
+    }
+
+    void remove(int offset, int len) {
+        moveGap(offset);
+        gapEnd += len;
+        text = null;
+    }
+
+    /**
+     * @return the current text, the same instance is returned until the next modification
+     */
+    String getText() {
+        if (text == null) {
+            StringBuilder sb = new StringBuilder(length());
+            sb.append(buffer, 0, gapStart);
+            sb.append(buffer, gapEnd, buffer.length - gapEnd);
+            text = sb.toString();
+        }
+        return text;
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int count = gapStart - offset;
+            System.arraycopy(buffer, offset, buffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (offset > gapStart) {
+            int count = offset - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    private void growGap(int required) {
+        int tail = buffer.length - gapEnd;
+        int newLength = Math.max(buffer.length * 3 / 2, length() + required + MIN_GAP);
+        char[] newBuffer = new char[newLength];
+        System.arraycopy(buffer, 0, newBuffer, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, newBuffer, newLength - tail, tail);
+        buffer = newBuffer;
+        gapEnd = newLength - tail;
+    }
+}
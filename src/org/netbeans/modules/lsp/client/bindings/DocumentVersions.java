@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+import javax.swing.text.Document;
+import org.netbeans.lib.editor.util.swing.DocumentUtilities;
+
+/**
+ * Registry of the versions of a document sent to the language servers, and of
+ * the {@link DocumentUtilities#getDocumentVersion(javax.swing.text.Document) }
+ * stamps of the document states.
+ *
+ * Features take a {@link #stamp() } before sending a request and check
+ * {@link #isCurrent(long) } before applying the response, so results computed
+ * for an outdated state of the document are dropped.
+ *
+ * @author ranSprd
+ */
+public final class DocumentVersions {
+
+    private final Document doc;
+    private int lspVersion = -1;
+
+    private DocumentVersions(Document doc) {
+        this.doc = doc;
+    }
+
+    public static DocumentVersions forDocument(Document doc) {
+        synchronized (DocumentVersions.class) {
+            DocumentVersions versions = (DocumentVersions) doc.getProperty(DocumentVersions.class);
+
+            if (versions == null) {
+                versions = new DocumentVersions(doc);
+                doc.putProperty(DocumentVersions.class, versions);
+            }
+
+            return versions;
+        }
+    }
+
+    /**
+     * The versions sent to the servers are increasing, even when the document
+     * is closed and opened again.
+     *
+     * @return the LSP version of the document state sent next
+     */
+    synchronized int nextVersion() {
+        return ++lspVersion;
+    }
+
+    /**
+     * @return LSP version last sent to the server, -1 if the document was not sent yet
+     */
+    public synchronized int getVersion() {
+        return lspVersion;
+    }
+
+    /**
+     * @return true if the given LSP version is older than the version last sent to the server
+     */
+    public synchronized boolean isOutdated(int version) {
+        return version < lspVersion;
+    }
+
+    /**
+     * @return stamp of the current document state
+     */
+    public long stamp() {
+        return DocumentUtilities.getDocumentVersion(doc);
+    }
+
+    /**
+     * @return true if the document was not modified since the stamp was taken
+     */
+    public boolean isCurrent(long stamp) {
+        return stamp == DocumentUtilities.getDocumentVersion(doc);
+    }
+}
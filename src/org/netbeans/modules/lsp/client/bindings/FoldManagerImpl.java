@@ -113,7 +113,13 @@ public class FoldManagerImpl implements FoldManager, BackgroundTask {
         if (doc == null) {
             return ;
         }
+        DocumentVersions versions = DocumentVersions.forDocument(doc);
+        long stamp = versions.stamp();
         List<FoldingRange> ranges = computeRanges(bindings, file);
+        if (!versions.isCurrent(stamp)) {
+            //modified while the query was running, will be recomputed
+            return ;
+        }
         List<FoldInfo> infos = new ArrayList<>();
         if (ranges != null) {
             for (FoldingRange r : ranges) {
@@ -18,9 +18,15 @@
  */
 package org.netbeans.modules.lsp.client.bindings;
 
-import java.util.ArrayList;
+import com.google.common.collect.MapMaker;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.text.BadLocationException;
@@ -39,13 +45,24 @@ import org.netbeans.modules.editor.indent.spi.ReformatTask;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
 import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.modules.lsp.client.log.LatencyHistogram;
 import org.netbeans.modules.lsp.client.model.LSPServerCapabilities;
 import org.openide.filesystems.FileObject;
 import org.openide.text.NbDocument;
 
+/**
+ * Formats the document by the server. The reformat runs with the document
+ * locked by the caller, so the document cannot change while the server
+ * computes the edits, but the editor is blocked meanwhile. The server is
+ * therefore given only {@code -J-Dorg.netbeans.modules.lsp.client.format.timeout}
+ * milliseconds (5s by default) to compute the edits.
+ */
 public class Formatter implements ReformatTask {
 
     private static final Logger LOG = Logger.getLogger(Formatter.class.getName());
+    private static final int TIME_BUDGET = Integer.getInteger("org.netbeans.modules.lsp.client.format.timeout", 5000);
+    private static final Map<LSPBindings, LatencyHistogram> server2Latency = new MapMaker().weakKeys().makeMap();
+    private static final LongAdder TIMEOUTS = new LongAdder();
 
     public static class Factory implements ReformatTask.Factory {
 
@@ -69,12 +86,27 @@ public class Formatter implements ReformatTask {
         this.ctx = ctx;
     }
 
+    /**
+     * @return durations of the format requests of the given server, until the edits were received
+     */
+    public static LatencyHistogram getFormatLatency(LSPBindings bindings) {
+        return server2Latency.computeIfAbsent(bindings, b -> new LatencyHistogram());
+    }
+
+    /**
+     * @return number of format requests not answered within the time budget
+     */
+    public static long getFormatTimeoutCount() {
+        return TIMEOUTS.sum();
+    }
+
     @Override
     public void reformat() throws BadLocationException {
         FileObject file = NbEditorUtilities.getFileObject(ctx.document());
         if (file != null) {
             LSPBindings bindings = LSPBindingFactory.getBindingForFile(file);
             if (bindings != null) {
+                TextDocumentSyncServerCapabilityHandler.flushPendingChanges(ctx.document());
                 LSPServerCapabilities capabilities = bindings.getInitResult().getCapabilities();
                 if (capabilities.hasDocumentRangeFormattingSupport()) {
                     rangeFormat(file, bindings);
@@ -94,14 +126,7 @@ public class Formatter implements ReformatTask {
         drfp.setRange(new Range(
             Utils.createPosition(ctx.document(), ctx.startOffset()),
             Utils.createPosition(ctx.document(), ctx.endOffset())));
-        List<TextEdit> edits = new ArrayList<>();
-        try {
-            edits = new ArrayList<>(bindings.getTextDocumentService().rangeFormatting(drfp).get());
-        } catch (InterruptedException | ExecutionException ex) {
-            LOG.log(Level.INFO,
-                String.format("LSP document rangeFormat failed for {0}", fo),
-                ex);
-        }
+        List<? extends TextEdit> edits = await(fo, bindings, bindings.getTextDocumentService().rangeFormatting(drfp));
 
         applyTextEdits(edits);
     }
@@ -112,25 +137,41 @@ public class Formatter implements ReformatTask {
         dfp.setOptions(new FormattingOptions(
             IndentUtils.indentLevelSize(ctx.document()),
             IndentUtils.isExpandTabs(ctx.document())));
-        List<TextEdit> edits = new ArrayList<>();
+        List<? extends TextEdit> edits = await(fo, bindings, bindings.getTextDocumentService().formatting(dfp));
+
+        applyTextEdits(edits);
+    }
+
+    /**
+     * wait for the edits at most for the time budget, a slow server must not block the editor
+     */
+    private static List<? extends TextEdit> await(FileObject fo, LSPBindings bindings, CompletableFuture<List<? extends TextEdit>> request) {
+        long start = System.nanoTime();
         try {
-            edits.addAll(bindings.getTextDocumentService().formatting(dfp).get());
+            List<? extends TextEdit> edits = request.get(TIME_BUDGET, TimeUnit.MILLISECONDS);
+            getFormatLatency(bindings).record(System.nanoTime() - start);
+            return edits != null ? edits : Collections.emptyList();
+        } catch (TimeoutException ex) {
+            request.cancel(true);
+            TIMEOUTS.increment();
+            LOG.log(Level.INFO, "LSP format of {0} did not finish in {1}ms", new Object[] {fo, TIME_BUDGET});
         } catch (InterruptedException | ExecutionException ex) {
             LOG.log(Level.INFO,
-                String.format("LSP document format failed for {0}", fo),
+                String.format("LSP format failed for %s", fo),
                 ex);
         }
-
-        applyTextEdits(edits);
+        return Collections.emptyList();
     }
 
-    private void applyTextEdits(List<TextEdit> edits) {
+    private void applyTextEdits(List<? extends TextEdit> edits) {
+        if (edits.isEmpty()) {
+            return ;
+        }
+        Runnable apply = () -> Utils.applyEditsNoLock(ctx.document(), edits, ctx.startOffset(), ctx.endOffset());
         if (ctx.document() instanceof StyledDocument) {
-            NbDocument.runAtomic((StyledDocument) ctx.document(), () -> {
-                Utils.applyEditsNoLock(ctx.document(), edits, ctx.startOffset(), ctx.endOffset());
-            });
+            NbDocument.runAtomic((StyledDocument) ctx.document(), apply);
         } else {
-            Utils.applyEditsNoLock(ctx.document(), edits, ctx.startOffset(), ctx.endOffset());
+            apply.run();
         }
     }
 
@@ -21,6 +21,7 @@ package org.netbeans.modules.lsp.client.bindings;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -35,6 +36,7 @@ import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.services.TextDocumentService;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPRequests;
 import org.netbeans.modules.lsp.client.LSPWorkingPool;
 import org.netbeans.modules.lsp.client.Utils;
 import org.openide.filesystems.FileObject;
@@ -82,6 +84,9 @@ public class HoverImpl implements LSPWorkingPool.BackgroundTask, CaretListener,
     @Override
     public void caretUpdate(CaretEvent e) {
         latestCaretPos = e.getDot();
+        if (document != null) {
+            LSPRequests.cancel(document, "hover");
+        }
         LSPWorkingPool.ASYNC.post(() -> {
             FileObject file = NbEditorUtilities.getFileObject(document);
 
@@ -113,13 +118,15 @@ public class HoverImpl implements LSPWorkingPool.BackgroundTask, CaretListener,
         if (!bindings.getInitResult().getCapabilities().hasHoverSupport()) {
             return Optional.empty();
         }
+        TextDocumentSyncServerCapabilityHandler.flushPendingChanges(document);
         String uri = Utils.toURI(file);
         TextDocumentService docService = bindings.getTextDocumentService();
 
         try {
             HoverParams params = new HoverParams(new TextDocumentIdentifier(uri), Utils.createPosition(document, offset));
-            return Optional.ofNullable(docService.hover(params).get(500, TimeUnit.MILLISECONDS)); // blocks until call is received
-        } catch (BadLocationException | ExecutionException ex) {
+            return Optional.ofNullable(LSPRequests.track(document, "hover", docService.hover(params))
+                                                  .get(500, TimeUnit.MILLISECONDS)); // blocks until call is received
+        } catch (BadLocationException | ExecutionException | CancellationException ex) {
         }
 
         return Optional.empty();
@@ -21,6 +21,7 @@ package org.netbeans.modules.lsp.client.bindings;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import javax.swing.text.AbstractDocument;
@@ -42,6 +43,7 @@ import org.netbeans.lib.editor.hyperlink.spi.HyperlinkType;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPRequests;
 import org.netbeans.modules.lsp.client.Utils;
 import org.netbeans.modules.textmate.lexer.TextmateTokenId;
 import org.openide.filesystems.FileObject;
@@ -112,15 +114,16 @@ public class HyperlinkProviderImpl implements HyperlinkProviderExt {
         if (server == null) {
             return ;
         }
+        TextDocumentSyncServerCapabilityHandler.flushPendingChanges(doc);
         String uri = Utils.toURI(file);
         try {
             DefinitionParams params;
             params = new DefinitionParams(new TextDocumentIdentifier(uri),
                                           Utils.createPosition(doc, offset));
             //TODO: Location or Location[]
-            CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> def = server.getTextDocumentService().definition(params);
+            CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> def = LSPRequests.track(doc, "definition", server.getTextDocumentService().definition(params));
             def.handleAsync((locations, exception) -> {
-                if (exception != null) {
+                if (exception != null && !(exception instanceof CancellationException)) {
                     exception.printStackTrace();
                 }
                 if (locations == null) {
@@ -20,7 +20,9 @@
 package org.netbeans.modules.lsp.client.bindings;
 
 import java.awt.Image;
+import java.util.EnumMap;
 import java.util.Locale;
+import java.util.Map;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import org.eclipse.lsp4j.CompletionItemKind;
@@ -38,10 +40,31 @@ public final class Icons {
     private static final String GIF_EXTENSION = ".gif";
     private static final String PNG_EXTENSION = ".png";
         
+    private static final Map<CompletionItemKind, ImageIcon> completionIcons = new EnumMap<>(CompletionItemKind.class);
+    private static ImageIcon defaultCompletionIcon;
+
     private Icons() {
     }
     
-    public static Icon getCompletionIcon(CompletionItemKind completionKind) {
+    /**
+     * @return the icon for the given kind, icons are loaded only once per kind
+     */
+    public static synchronized ImageIcon getCompletionIcon(CompletionItemKind completionKind) {
+        ImageIcon icon = completionKind != null ? completionIcons.get(completionKind) : defaultCompletionIcon;
+
+        if (icon == null) {
+            icon = loadCompletionIcon(completionKind);
+            if (completionKind != null) {
+                completionIcons.put(completionKind, icon);
+            } else {
+                defaultCompletionIcon = icon;
+            }
+        }
+
+        return icon;
+    }
+
+    private static ImageIcon loadCompletionIcon(CompletionItemKind completionKind) {
         Image img = null;
 
         if (completionKind != null) {
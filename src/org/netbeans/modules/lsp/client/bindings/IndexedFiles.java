@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * MIME types of the indexed files of a source root, by path relative to the
+ * root. Changes are appended to a record log in the index folder, the log is
+ * read memory mapped and rewritten only when it mostly consists of outdated
+ * records. The number of files per MIME type is kept in memory.
+ *
+ * Record layout: {@code byte operation, short path length, path (UTF-8)}, for
+ * {@link #PUT} followed by {@code short MIME type length, MIME type (UTF-8)}.
+ *
+ * @author ranSprd
+ */
+final class IndexedFiles {
+
+    private static final Logger LOG = Logger.getLogger(IndexedFiles.class.getName());
+    private static final String LOG_FILE_NAME = "files.log";
+    private static final String OLD_INDEX_FILE_NAME = "index.properties";
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    // by root URL
+    private static final Map<String, IndexedFiles> root2Files = new ConcurrentHashMap<>();
+
+    private final File logFile;
+    private final Map<String, String> path2MimeType = new HashMap<>();
+    private final Map<String, Integer> mimeType2Count = new HashMap<>();
+    private int records;
+    // number of records from which the log is compacted, postponed when a compaction fails
+    private int compactAfter = MIN_COMPACT_RECORDS;
+
+    private IndexedFiles(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * @return files of the given root, null if its index folder is not on disk
+     */
+    static IndexedFiles forRoot(URL root, FileObject indexFolder) {
+        File folder = FileUtil.toFile(indexFolder);
+
+        if (folder == null) {
+            return null;
+        }
+
+        return root2Files.computeIfAbsent(root.toExternalForm(), r -> {
+            IndexedFiles files = new IndexedFiles(new File(folder, LOG_FILE_NAME));
+
+            synchronized (files) {
+                files.load(indexFolder);
+            }
+            return files;
+        });
+    }
+
+    /**
+     * forget the files of the removed roots, they are loaded again when a root is indexed
+     */
+    static void rootsRemoved(Iterable<? extends URL> roots) {
+        for (URL root : roots) {
+            root2Files.remove(root.toExternalForm());
+        }
+    }
+
+    /**
+     * record the MIME types of the given files, only changes are written
+     *
+     * @param path2MimeType MIME types by relative path
+     */
+    synchronized void put(Map<String, String> path2MimeType) {
+        List<byte[]> changes = new ArrayList<>();
+
+        for (Map.Entry<String, String> e : path2MimeType.entrySet()) {
+            if (apply(PUT, e.getKey(), e.getValue())) {
+                changes.add(record(PUT, e.getKey(), e.getValue()));
+            }
+        }
+
+        write(changes);
+    }
+
+    synchronized void remove(Iterable<String> relativePaths) {
+        List<byte[]> changes = new ArrayList<>();
+
+        for (String relativePath : relativePaths) {
+            if (apply(REMOVE, relativePath, null)) {
+                changes.add(record(REMOVE, relativePath, null));
+            }
+        }
+
+        write(changes);
+    }
+
+    /**
+     * @return number of indexed files per MIME type, of all roots used so far
+     */
+    static Map<String, Integer> getAllMimeTypeCounts() {
+        Map<String, Integer> result = new HashMap<>();
+
+        for (IndexedFiles files : root2Files.values()) {
+            synchronized (files) {
+                files.mimeType2Count.forEach((mimeType, count) -> result.merge(mimeType, count, Integer::sum));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return MIME types of the indexed files
+     */
+    synchronized List<String> getMimeTypes() {
+        return new ArrayList<>(mimeType2Count.keySet());
+    }
+
+    private boolean apply(byte operation, String relativePath, String mimeType) {
+        String old = operation == PUT ? path2MimeType.put(relativePath, mimeType)
+                                      : path2MimeType.remove(relativePath);
+
+        if (old != null ? old.equals(mimeType) : mimeType == null) {
+            return false;
+        }
+        if (old != null) {
+            mimeType2Count.computeIfPresent(old, (m, count) -> count > 1 ? count - 1 : null);
+        }
+        if (mimeType != null) {
+            mimeType2Count.merge(mimeType, 1, Integer::sum);
+        }
+        return true;
+    }
+
+    private void load(FileObject indexFolder) {
+        if (!logFile.canRead()) {
+            importProperties(indexFolder);
+            return ;
+        }
+
+        boolean truncated = false;
+        long valid = 0;
+
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "r")) {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            try {
+                while (buffer.hasRemaining()) {
+                    byte operation = buffer.get();
+                    String relativePath = readString(buffer);
+                    String mimeType = operation == PUT ? readString(buffer) : null;
+                    apply(operation, relativePath, mimeType);
+                    records++;
+                    valid = buffer.position();
+                }
+            } catch (BufferUnderflowException ex) {
+                //truncated record, written when the IDE was killed
+                LOG.log(Level.FINE, null, ex);
+                truncated = true;
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+
+        if (truncated && !compact()) {
+            // new records must not follow the broken one
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(valid);
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * the files were kept in {@code index.properties} before
+     */
+    private void importProperties(FileObject indexFolder) {
+        FileObject index = indexFolder.getFileObject(OLD_INDEX_FILE_NAME);
+
+        if (index == null) {
+            return ;
+        }
+
+        Properties props = new Properties();
+
+        try (InputStream in = index.getInputStream()) {
+            props.load(in);
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+
+        for (String relativePath : props.stringPropertyNames()) {
+            apply(PUT, relativePath, props.getProperty(relativePath));
+        }
+
+        compact();
+
+        try {
+            index.delete();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] record(byte operation, String relativePath, String mimeType) {
+        byte[] path = relativePath.getBytes(StandardCharsets.UTF_8);
+        byte[] mime = mimeType != null ? mimeType.getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + path.length + (mime != null ? 2 + mime.length : 0));
+
+        record.put(operation);
+        record.putShort((short) path.length);
+        record.put(path);
+        if (mime != null) {
+            record.putShort((short) mime.length);
+            record.put(mime);
+        }
+
+        return record.array();
+    }
+
+    private void write(List<byte[]> changes) {
+        if (changes.isEmpty()) {
+            return ;
+        }
+
+        records += changes.size();
+
+        if (records > compactAfter && records > 2 * path2MimeType.size()) {
+            if (compact()) {
+                compactAfter = MIN_COMPACT_RECORDS;
+                return ;
+            }
+            compactAfter = records + MIN_COMPACT_RECORDS;
+        }
+
+        // appended also when the compaction failed, e.g. while the log is still mapped
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)))) {
+            for (byte[] record : changes) {
+                out.write(record);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * rewrite the log with a record per file, written aside and renamed
+     *
+     * @return false if the log was not replaced
+     */
+    private boolean compact() {
+        File temp = new File(logFile.getParentFile(), LOG_FILE_NAME + ".new");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            for (Map.Entry<String, String> e : path2MimeType.entrySet()) {
+                out.write(record(PUT, e.getKey(), e.getValue()));
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+            temp.delete();
+            return false;
+        }
+
+        if (!temp.renameTo(logFile) && (!logFile.delete() || !temp.renameTo(logFile))) {
+            LOG.log(Level.FINE, "Cannot replace {0}", logFile);
+            temp.delete();
+            return false;
+        }
+
+        records = path2MimeType.size();
+        return true;
+    }
+}
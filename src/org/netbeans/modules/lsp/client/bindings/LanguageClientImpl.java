@@ -24,6 +24,9 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.text.Document;
@@ -31,12 +34,14 @@ import org.eclipse.lsp4j.ApplyWorkspaceEditParams;
 import org.eclipse.lsp4j.ApplyWorkspaceEditResponse;
 import org.eclipse.lsp4j.ConfigurationItem;
 import org.eclipse.lsp4j.ConfigurationParams;
+import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.LogTraceParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.ProgressParams;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.RegistrationParams;
+import org.eclipse.lsp4j.ServerInfo;
 import org.eclipse.lsp4j.SetTraceParams;
 import org.eclipse.lsp4j.ShowDocumentParams;
 import org.eclipse.lsp4j.ShowDocumentResult;
@@ -46,6 +51,7 @@ import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
 import org.eclipse.lsp4j.WorkspaceFolder;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPExecutor;
 import org.netbeans.modules.lsp.client.Utils;
 import org.netbeans.modules.lsp.client.bindings.hints.HintsAndErrorsProvider;
 import org.netbeans.modules.lsp.client.log.LogStorage;
@@ -65,10 +71,17 @@ public class LanguageClientImpl implements LanguageClient {
     private static final Logger LOG = Logger.getLogger(LanguageClientImpl.class.getName());
     private static final RequestProcessor WORKER = new RequestProcessor(LanguageClientImpl.class.getName(), 1, false, false);
     
+    private static final LongAdder DROPPED_DIAGNOSTICS = new LongAdder();
+    private static final LongAdder MERGED_DIAGNOSTICS = new LongAdder();
+    private static final LongAdder APPLIED_DIAGNOSTICS = new LongAdder();
+
+    private final ConcurrentMap<String, PublishDiagnosticsParams> pendingDiagnostics = new ConcurrentHashMap<>();
     private boolean allowCodeActions;
     private HintsAndErrorsProvider hintsAndErrorsProvider;
+    private LSPBindings bindings;
     
     public void setBindings(LSPBindings bindings) {
+        this.bindings = bindings;
         this.allowCodeActions = bindings.getInitResult().getCapabilities().hasCodeActionSupport();
         this.hintsAndErrorsProvider = new HintsAndErrorsProvider(bindings);
     }
@@ -82,27 +95,84 @@ public class LanguageClientImpl implements LanguageClient {
         System.err.println("telemetry: " + arg0);
     }
 
+    /**
+     * Diagnostics are queued per URI, only the latest set of an URI is
+     * processed. Sets for the same version of the document are merged, as
+     * servers may split the diagnostics of one version into several
+     * notifications.
+     */
     @Override
     public void publishDiagnostics(PublishDiagnosticsParams pdp) {
         if (allowCodeActions && hintsAndErrorsProvider != null) {
-            try {
-                FileObject file = URLMapper.findFileObject(new URI(pdp.getUri()).toURL());
-                EditorCookie ec = file.getLookup().lookup(EditorCookie.class);
-                Document doc = ec != null ? ec.getDocument() : null;
-                if (doc == null) {
-                    return ; //ignore...
+            boolean[] schedule = new boolean[1];
+            pendingDiagnostics.compute(pdp.getUri(), (uri, pending) -> {
+                if (pending == null) {
+                    schedule[0] = true;
+                    return pdp;
                 }
-
-                WORKER.post(() -> {                
-                    List<ErrorDescription> errorDescriptions = hintsAndErrorsProvider.transform(pdp, file, doc);
-                    HintsController.setErrors(doc, LanguageClientImpl.class.getName(), errorDescriptions);
+                if (pdp.getVersion() != null && pdp.getVersion().equals(pending.getVersion()) && pdp.getVersion() != 0) {
+                    MERGED_DIAGNOSTICS.increment();
+                    List<Diagnostic> diagnostics = new ArrayList<>(pending.getDiagnostics());
+                    diagnostics.addAll(pdp.getDiagnostics());
+                    return new PublishDiagnosticsParams(uri, diagnostics, pdp.getVersion());
+                }
+                DROPPED_DIAGNOSTICS.increment();
+                return pdp;
+            });
+            if (schedule[0]) {
+                // processed in the lane of this server, diagnostics of other servers are not delayed
+                bindings.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> {
+                    processDiagnostics(pendingDiagnostics.remove(pdp.getUri()));
                 });
-                
-            } catch (URISyntaxException | MalformedURLException ex) {
-                LOG.log(Level.FINE, null, ex);
             }
         }
     }
+
+    private void processDiagnostics(PublishDiagnosticsParams pdp) {
+        try {
+            FileObject file = URLMapper.findFileObject(new URI(pdp.getUri()).toURL());
+            if (file == null) {
+                return ;
+            }
+            EditorCookie ec = file.getLookup().lookup(EditorCookie.class);
+            Document doc = ec != null ? ec.getDocument() : null;
+            if (doc == null) {
+                return ; //ignore...
+            }
+            if (pdp.getVersion() != null && DocumentVersions.forDocument(doc).isOutdated(pdp.getVersion())) {
+                return ; //computed for an older version of the document
+            }
+
+            List<ErrorDescription> errorDescriptions = hintsAndErrorsProvider.transform(pdp, file, doc);
+            if (errorDescriptions != null) {
+                HintsController.setErrors(doc, LanguageClientImpl.class.getName(), errorDescriptions);
+                APPLIED_DIAGNOSTICS.increment();
+            }
+        } catch (URISyntaxException | MalformedURLException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * @return number of diagnostic sets replaced by a newer set before they were processed
+     */
+    public static long getDroppedDiagnosticsCount() {
+        return DROPPED_DIAGNOSTICS.sum();
+    }
+
+    /**
+     * @return number of diagnostic sets merged into a pending set of the same version
+     */
+    public static long getMergedDiagnosticsCount() {
+        return MERGED_DIAGNOSTICS.sum();
+    }
+
+    /**
+     * @return number of diagnostic sets which changed the errors shown in the editor
+     */
+    public static long getAppliedDiagnosticsCount() {
+        return APPLIED_DIAGNOSTICS.sum();
+    }
     
 
     /**
@@ -142,18 +212,24 @@ public class LanguageClientImpl implements LanguageClient {
      */
     @Override
     public void logMessage(MessageParams message) {
+        String server = getServerName();
         switch(message.getType()) {
-            case Error: LogStorage.ALL.error(message.getMessage());
+            case Error: LogStorage.ALL.error(server, message.getMessage());
                         break;
-            case Warning: LogStorage.ALL.warning(message.getMessage());
+            case Warning: LogStorage.ALL.warning(server, message.getMessage());
                         break;
-            default: LogStorage.ALL.info(message.getMessage());
+            default: LogStorage.ALL.info(server, message.getMessage());
                         break;
         }
 //        System.err.println("logMessage: " + arg0);
     }
     
     
+    private String getServerName() {
+        ServerInfo info = bindings != null ? bindings.getInitResult().getServerInfo() : null;
+        return info != null ? info.getName() : null;
+    }
+
     /**
      * The workspace/configuration request is sent from the server to the client to fetch
      * configuration settings from the client. The request can fetch several configuration settings
@@ -189,8 +265,7 @@ public class LanguageClientImpl implements LanguageClient {
     public CompletableFuture<List<WorkspaceFolder>> workspaceFolders() {
         CompletableFuture<List<WorkspaceFolder>> result = new CompletableFuture<>();
         WORKER.post(() -> {
-            List<WorkspaceFolder> outcome = new ArrayList<>();
-            // @todo add folder logic
+            List<WorkspaceFolder> outcome = bindings != null ? bindings.getWorkspaceFolders() : new ArrayList<>();
             result.complete(outcome);
         });
         return result;
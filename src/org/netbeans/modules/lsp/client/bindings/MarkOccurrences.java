@@ -24,6 +24,7 @@ import java.beans.PropertyChangeListener;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,6 +53,7 @@ import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
 import org.netbeans.modules.lsp.client.LSPWorkingPool;
+import org.netbeans.modules.lsp.client.LSPRequests;
 import org.netbeans.modules.lsp.client.LSPWorkingPool.BackgroundTask;
 import org.netbeans.modules.lsp.client.Utils;
 import org.netbeans.spi.editor.highlighting.HighlightsLayer;
@@ -105,7 +107,14 @@ public class MarkOccurrences implements BackgroundTask, CaretListener, PropertyC
             document = this.doc;
             latestCaretPos = this.caretPos;
         }
-        getHighlightsBag(document).setHighlights(computeHighlights(document, latestCaretPos));
+        DocumentVersions versions = DocumentVersions.forDocument(document);
+        long stamp = versions.stamp();
+        OffsetsBag highlights = computeHighlights(document, latestCaretPos);
+        if (!versions.isCurrent(stamp)) {
+            //computed for an outdated document, will be recomputed for the current one
+            return ;
+        }
+        getHighlightsBag(document).setHighlights(highlights);
 
         // this is experimental and should test the 'prepend' text feature 
         if (last != null) {
@@ -158,8 +167,8 @@ public class MarkOccurrences implements BackgroundTask, CaretListener, PropertyC
         try {
             DocumentHighlightParams params = new DocumentHighlightParams(new TextDocumentIdentifier(fileUri), 
                                                                   Utils.createPosition(doc, caretPos));
-            List<? extends DocumentHighlight> highlights = server.getTextDocumentService()
-                                                                    .documentHighlight( params)
+            List<? extends DocumentHighlight> highlights = LSPRequests.track(this, "highlight", server.getTextDocumentService()
+                                                                                                       .documentHighlight( params))
                                                                     .get();
             if (highlights != null) {
                 for (DocumentHighlight h : highlights) {
@@ -168,7 +177,7 @@ public class MarkOccurrences implements BackgroundTask, CaretListener, PropertyC
                                          attr);
                 }
             }
-        } catch (BadLocationException | InterruptedException | ExecutionException ex) {
+        } catch (BadLocationException | InterruptedException | ExecutionException | CancellationException ex) {
         }
     }
     
@@ -177,8 +186,8 @@ public class MarkOccurrences implements BackgroundTask, CaretListener, PropertyC
             ReferenceParams params = new ReferenceParams( new TextDocumentIdentifier(fileUri), 
                                                           Utils.createPosition(doc, caretPos),
                                                           new ReferenceContext(true));
-            List<? extends Location> references = server.getTextDocumentService()
-                                                            .references( params)
+            List<? extends Location> references = LSPRequests.track(this, "highlight", server.getTextDocumentService()
+                                                                                          .references( params))
                                                             .get();
             last = references;
             for(Location location : references) {
@@ -208,6 +217,8 @@ public class MarkOccurrences implements BackgroundTask, CaretListener, PropertyC
     @Override
     public synchronized void caretUpdate(CaretEvent e) {
         caretPos = e.getDot();
+        //the highlights for the previous caret position are not needed anymore
+        LSPRequests.cancel(this, "highlight");
         WORKER.post(() -> {
             FileObject file = NbEditorUtilities.getFileObject(doc);
 
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentSyncKind;
+import org.eclipse.lsp4j.TextDocumentSyncOptions;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.netbeans.lib.editor.util.swing.DocumentUtilities;
+import org.netbeans.modules.lsp.client.LSPBindingFactory;
+import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPExecutor;
+import org.netbeans.modules.lsp.client.LSPWorkingPool;
+import org.netbeans.modules.lsp.client.Utils;
+import org.openide.filesystems.FileObject;
+import org.openide.util.Exceptions;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Collects the modifications of a document and sends them as a single
+ * {@code didChange} notification, either after a short idle time or before
+ * a request for the document is sent to the server. Contiguous typing and
+ * deleting is merged into a single change. For servers supporting only full
+ * synchronization the text is taken from a {@link DocumentTextMirror}.
+ * Modifications done in a batch are recorded as a single change of the
+ * modified part.
+ *
+ * @author ranSprd
+ */
+final class PendingDocumentChanges {
+
+    private static final int IDLE_DELAY = 150;
+    private static final int FULL_SYNC_IDLE_DELAY = 500;
+    private static final LongAdder SAVED_MESSAGES = new LongAdder();
+
+    private final Document doc;
+    private final FileObject file;
+    private final RequestProcessor.Task idleFlush;
+    private final Object sendLock = new Object();
+
+    private final List<TextDocumentContentChangeEvent> changes = new ArrayList<>();
+    private int events;
+    private DocumentTextMirror mirror;
+    private boolean mirrorModified;
+
+    // state of the last change, used to merge contiguous modifications
+    private int insertEnd = -1;
+    private int removeStart = -1;
+    private String removedText;
+
+    // batch in progress, the individual modifications are not recorded
+    private boolean batch;
+    private int batchStart;
+    private int batchEnd;
+    private int batchDocumentLength;
+    private long batchDocumentVersion;
+    private Range batchRange;
+
+    PendingDocumentChanges(Document doc, FileObject file, RequestProcessor worker) {
+        this.doc = doc;
+        this.file = file;
+        this.idleFlush = worker.create(() -> {
+            LSPBindings server = LSPBindingFactory.getBindingForFile(file);
+
+            if (server == null) {
+                discard();
+                return ;
+            }
+
+            server.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> flush(server));
+        });
+    }
+
+    static long getSavedMessages() {
+        return SAVED_MESSAGES.sum();
+    }
+
+    /**
+     * record an insert, called from the document listener
+     */
+    synchronized void inserted(int offset, String text) throws BadLocationException {
+        events++;
+        if (mirror != null) {
+            mirror.insert(offset, text);
+            mirrorModified = true;
+            idleFlush.schedule(FULL_SYNC_IDLE_DELAY);
+            return ;
+        }
+        if (batch) {
+            return ;
+        }
+        if (offset == insertEnd && !changes.isEmpty()) {
+            TextDocumentContentChangeEvent last = changes.get(changes.size() - 1);
+            last.setText(last.getText() + text);
+        } else {
+            Position startPos = Utils.createPosition(doc, offset);
+            changes.add(new TextDocumentContentChangeEvent(new Range(startPos, startPos), 0, text));
+        }
+        insertEnd = offset + text.length();
+        removeStart = -1;
+        removedText = null;
+        idleFlush.schedule(IDLE_DELAY);
+    }
+
+    /**
+     * record a removal, called from the document listener
+     */
+    synchronized void removed(int offset, String text) throws BadLocationException {
+        events++;
+        if (mirror != null) {
+            mirror.remove(offset, text.length());
+            mirrorModified = true;
+            idleFlush.schedule(FULL_SYNC_IDLE_DELAY);
+            return ;
+        }
+        if (batch) {
+            return ;
+        }
+        String merged = null;
+        if (removeStart != -1 && !changes.isEmpty()) {
+            if (offset + text.length() == removeStart) {
+                //backspace
+                merged = text + removedText;
+            } else if (offset == removeStart) {
+                //delete
+                merged = removedText + text;
+            }
+        }
+        Position startPos = Utils.createPosition(doc, offset);
+        if (merged != null) {
+            changes.set(changes.size() - 1, new TextDocumentContentChangeEvent(new Range(startPos, Utils.computeEndPositionForRemovedText(startPos, merged)), merged.length(), ""));
+            removedText = merged;
+        } else {
+            changes.add(new TextDocumentContentChangeEvent(new Range(startPos, Utils.computeEndPositionForRemovedText(startPos, text)), text.length(), ""));
+            removedText = text;
+        }
+        removeStart = offset;
+        insertEnd = -1;
+        idleFlush.schedule(IDLE_DELAY);
+    }
+
+    /**
+     * start a batch of modifications between the given offsets, called with the document write lock
+     */
+    synchronized void beginBatch(int start, int end) throws BadLocationException {
+        Position[] positions = Utils.createPositions(doc, start, end);
+        batch = true;
+        batchStart = start;
+        batchEnd = end;
+        batchDocumentLength = doc.getLength();
+        batchDocumentVersion = DocumentUtilities.getDocumentVersion(doc);
+        batchRange = new Range(positions[0], positions[1]);
+    }
+
+    /**
+     * record the modifications of the batch as a single change
+     */
+    synchronized void endBatch() throws BadLocationException {
+        batch = false;
+        if (mirror != null) {
+            return ;
+        }
+        if (DocumentUtilities.getDocumentVersion(doc) == batchDocumentVersion) {
+            //not modified in the batch
+            return ;
+        }
+        int lengthDelta = doc.getLength() - batchDocumentLength;
+        String text = doc.getText(batchStart, batchEnd - batchStart + lengthDelta);
+        changes.add(new TextDocumentContentChangeEvent(batchRange, batchEnd - batchStart, text));
+        insertEnd = -1;
+        removeStart = -1;
+        removedText = null;
+        batchRange = null;
+        idleFlush.schedule(IDLE_DELAY);
+    }
+
+    /**
+     * send the pending changes to the server, if there are any
+     */
+    void flush(LSPBindings server) {
+        TextDocumentSyncKind syncKind = getSyncKind(server);
+
+        if (syncKind == TextDocumentSyncKind.Full) {
+            ensureMirror();
+        }
+
+        synchronized (sendLock) {
+            List<TextDocumentContentChangeEvent> toSend;
+            int sentEvents;
+            int sentVersion;
+
+            synchronized (this) {
+                if (changes.isEmpty() && !mirrorModified) {
+                    return ;
+                }
+                if (syncKind == TextDocumentSyncKind.None) {
+                    resetPending();
+                    return ;
+                }
+                if (mirror != null) {
+                    toSend = Collections.singletonList(new TextDocumentContentChangeEvent(mirror.getText()));
+                } else {
+                    toSend = new ArrayList<>(changes);
+                }
+                sentEvents = events;
+                sentVersion = DocumentVersions.forDocument(doc).nextVersion();
+                resetPending();
+            }
+
+            VersionedTextDocumentIdentifier di = new VersionedTextDocumentIdentifier(Utils.toURI(file), sentVersion);
+            server.getTextDocumentService().didChange(new DidChangeTextDocumentParams(di, toSend));
+            SAVED_MESSAGES.add(sentEvents - 1);
+        }
+        LSPWorkingPool.scheduleBackgroundTasks(file);
+    }
+
+    /**
+     * the text is copied from the document only once, later it is updated from the document events
+     */
+    private void ensureMirror() {
+        synchronized (this) {
+            if (mirror != null) {
+                return ;
+            }
+        }
+        // same lock order as the document listener: document lock first
+        doc.render(() -> {
+            synchronized (this) {
+                if (mirror == null) {
+                    try {
+                        mirror = new DocumentTextMirror(doc.getText(0, doc.getLength()));
+                        mirrorModified = !changes.isEmpty();
+                        changes.clear();
+                    } catch (BadLocationException ex) {
+                        Exceptions.printStackTrace(ex);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * send the pending changes before a request is sent; if the document is
+     * not opened in the server yet, the changes are sent in the order of the
+     * server's notifications
+     */
+    void flushBeforeRequest() {
+        synchronized (this) {
+            if (changes.isEmpty() && !mirrorModified) {
+                return ;
+            }
+        }
+
+        LSPBindings server = LSPBindingFactory.getBindingForFile(file);
+
+        if (server == null) {
+            return ;
+        }
+
+        idleFlush.cancel();
+        if (server.getOpenedFiles().contains(file)) {
+            flush(server);
+        } else {
+            server.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> flush(server));
+        }
+    }
+
+    synchronized void discard() {
+        resetPending();
+    }
+
+    private void resetPending() {
+        changes.clear();
+        mirrorModified = false;
+        events = 0;
+        insertEnd = -1;
+        removeStart = -1;
+        removedText = null;
+    }
+
+    static TextDocumentSyncKind getSyncKind(LSPBindings server) {
+        TextDocumentSyncKind syncKind = TextDocumentSyncKind.None;
+        Either<TextDocumentSyncKind, TextDocumentSyncOptions> sync = server.getInitResult().getCapabilities().getTextDocumentSync();
+        if (sync != null) {
+            if (sync.isLeft()) {
+                syncKind = sync.getLeft();
+            } else {
+                TextDocumentSyncKind change = sync.getRight().getChange();
+                if (change != null)
+                    syncKind = change;
+            }
+        }
+        return syncKind;
+    }
+}
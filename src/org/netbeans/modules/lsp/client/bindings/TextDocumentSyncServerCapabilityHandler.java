@@ -19,7 +19,6 @@
 package org.netbeans.modules.lsp.client.bindings;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -33,28 +32,25 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import javax.swing.text.StyledDocument;
-import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.Position;
-import org.eclipse.lsp4j.Range;
-import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
-import org.eclipse.lsp4j.TextDocumentSyncOptions;
 import org.eclipse.lsp4j.TextEdit;
-import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
-import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.netbeans.api.editor.EditorRegistry;
 import org.netbeans.editor.BaseDocumentEvent;
 import org.netbeans.lib.editor.util.swing.DocumentUtilities;
 import org.netbeans.modules.editor.*;
 import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPExecutor;
 import org.netbeans.modules.lsp.client.LSPWorkingPool;
 import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.modules.lsp.client.bindings.hints.DiagnosticStore;
 import org.netbeans.modules.lsp.client.bindings.symbols.DocumentStructureProvider;
+import org.openide.cookies.EditorCookie;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.modules.OnStart;
@@ -127,6 +123,70 @@ public class TextDocumentSyncServerCapabilityHandler {
 
     private final Map<Document, Integer> openDocument2PanesCount = new HashMap<>();
 
+    /**
+     * Send the modifications of the document, which are not sent to the server
+     * yet. Should be called before a request for the document is sent.
+     */
+    public static void flushPendingChanges(Document doc) {
+        PendingDocumentChanges pending = (PendingDocumentChanges) doc.getProperty(PendingDocumentChanges.class);
+
+        if (pending != null) {
+            pending.flushBeforeRequest();
+        }
+    }
+
+    /**
+     * @see #flushPendingChanges(javax.swing.text.Document)
+     */
+    public static void flushPendingChanges(FileObject file) {
+        EditorCookie ec = file.getLookup().lookup(EditorCookie.class);
+        Document doc = ec != null ? ec.getDocument() : null;
+
+        if (doc != null) {
+            flushPendingChanges(doc);
+        }
+    }
+
+    /**
+     * Run a modification of the part of the document between {@code start}
+     * and {@code end}, the server is sent a single change replacing the part
+     * instead of the individual insertions and removals. The caller holds the
+     * document write lock, the modification must not change the document
+     * outside of the part.
+     */
+    public static void runAsSingleChange(Document doc, int start, int end, Runnable modification) {
+        PendingDocumentChanges pending = (PendingDocumentChanges) doc.getProperty(PendingDocumentChanges.class);
+
+        if (pending == null) {
+            modification.run();
+            return ;
+        }
+
+        try {
+            pending.beginBatch(start, end);
+        } catch (BadLocationException ex) {
+            Exceptions.printStackTrace(ex);
+            modification.run();
+            return ;
+        }
+        try {
+            modification.run();
+        } finally {
+            try {
+                pending.endBatch();
+            } catch (BadLocationException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+    }
+
+    /**
+     * @return number of {@code didChange} notifications saved by merging modifications
+     */
+    public static long getSavedDidChangeCount() {
+        return PendingDocumentChanges.getSavedMessages();
+    }
+
     private void documentOpened(Document doc) {
         FileObject file = NbEditorUtilities.getFileObject(doc);
 
@@ -137,93 +197,59 @@ public class TextDocumentSyncServerCapabilityHandler {
         openDocument2PanesCount.computeIfAbsent(doc, d -> {
             doc.putProperty(TextDocumentSyncServerCapabilityHandler.class, true);
             ensureDidOpenSent(doc);
+            PendingDocumentChanges pending = new PendingDocumentChanges(doc, file, WORKER);
+            doc.putProperty(PendingDocumentChanges.class, pending);
             doc.addDocumentListener(new DocumentListener() { //XXX: listener
-                int version; //XXX: proper versioning!
                 @Override
                 public void insertUpdate(DocumentEvent e) {
                     try {
-                        fireEvent(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()), "");
+                        String newText = e.getDocument().getText(e.getOffset(), e.getLength());
+                        pending.inserted(e.getOffset(), newText);
+                        if (DocumentUtilities.isTypingModification(doc) && (newText.equals("}") || newText.equals("\n"))) {
+                            indentAfterTyping(e.getOffset(), newText);
+                        }
                     } catch (BadLocationException ex) {
                         Exceptions.printStackTrace(ex);
                     }
                 }
                 @Override
                 public void removeUpdate(DocumentEvent e) {
-                    fireEvent(e.getOffset(), "", ((BaseDocumentEvent) e).getText());
-                }
-                private void fireEvent(int start, String newText, String oldText) {
                     try {
-                        Position startPos = Utils.createPosition(doc, start);
-                        Position endPos = Utils.computeEndPositionForRemovedText(startPos, oldText);
-                        TextDocumentContentChangeEvent[] event = new TextDocumentContentChangeEvent[1];
-                        event[0] = new TextDocumentContentChangeEvent(new Range(startPos,
-                                                                             endPos),
-                                                                   oldText.length(),
-                                                                   newText);
-
-                        boolean typingModification = DocumentUtilities.isTypingModification(doc);
-                        long documentVersion = DocumentUtilities.getDocumentVersion(doc);
-
-                        WORKER.post(() -> {
-                            LSPBindings server = LSPBindingFactory.getBindingForFile(file);
-
-                            if (server == null)
-                                return ; //ignore
-
-                            TextDocumentSyncKind syncKind = TextDocumentSyncKind.None;
-                            Either<TextDocumentSyncKind, TextDocumentSyncOptions> sync = server.getInitResult().getCapabilities().getTextDocumentSync();
-                            if (sync != null) {
-                                if (sync.isLeft()) {
-                                    syncKind = sync.getLeft();
-                                } else {
-                                    TextDocumentSyncKind change = sync.getRight().getChange();
-                                    if (change != null)
-                                        syncKind = change;
-                                }
-                            }
-                            switch (syncKind) {
-                                case None:
-                                    return ;
-                                case Full:
-                                    doc.render(() -> {
-                                        try {
-                                            event[0] = new TextDocumentContentChangeEvent(doc.getText(0, doc.getLength()));
-                                        } catch (BadLocationException ex) {
-                                            Exceptions.printStackTrace(ex);
-                                            event[0] = new TextDocumentContentChangeEvent("");
-                                        }
-                                    });
-                                    break;
-                                case Incremental:
-                                    //event already filled
-                                    break;
+                        pending.removed(e.getOffset(), ((BaseDocumentEvent) e).getText());
+                    } catch (BadLocationException ex) {
+                        Exceptions.printStackTrace(ex);
+                    }
+                }
+                private void indentAfterTyping(int start, String newText) throws BadLocationException {
+                    Position startPos = Utils.createPosition(doc, start);
+                    long documentVersion = DocumentUtilities.getDocumentVersion(doc);
+
+                    WORKER.post(() -> {
+                        LSPBindings server = LSPBindingFactory.getBindingForFile(file);
+
+                        if (server == null)
+                            return ; //ignore
+
+                        server.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> {
+                            if (PendingDocumentChanges.getSyncKind(server) == TextDocumentSyncKind.None) {
+                                return ;
                             }
+                            // the server should see the typed text before the indentation
+                            pending.flush(server);
 
-                            VersionedTextDocumentIdentifier di = new VersionedTextDocumentIdentifier(org.netbeans.modules.lsp.client.Utils.toURI(file), ++version);
-                            DidChangeTextDocumentParams params = new DidChangeTextDocumentParams(di, Arrays.asList(event));
-
-                            server.getTextDocumentService().didChange(params);
-
-                            if (typingModification && oldText.isEmpty() && event.length == 1) {
-                                if (newText.equals("}") || newText.equals("\n")) {
-                                    List<TextEdit> edits = new ArrayList<>();
-                                    doc.render(() -> {
-                                        if (documentVersion != DocumentUtilities.getDocumentVersion(doc))
-                                            return ;
-                                        edits.addAll(Utils.computeDefaultOnTypeIndent(doc, start, startPos, newText));
-                                    });
-                                    NbDocument.runAtomic((StyledDocument) doc, () -> {
-                                        if (documentVersion == DocumentUtilities.getDocumentVersion(doc)) {
-                                            Utils.applyEditsNoLock(doc, edits);
-                                        }
-                                    });
+                            List<TextEdit> edits = new ArrayList<>();
+                            doc.render(() -> {
+                                if (documentVersion != DocumentUtilities.getDocumentVersion(doc))
+                                    return ;
+                                edits.addAll(Utils.computeDefaultOnTypeIndent(doc, start, startPos, newText));
+                            });
+                            NbDocument.runAtomic((StyledDocument) doc, () -> {
+                                if (documentVersion == DocumentUtilities.getDocumentVersion(doc)) {
+                                    Utils.applyEditsNoLock(doc, edits);
                                 }
-                            }
-                            LSPWorkingPool.scheduleBackgroundTasks(file);
+                            });
                         });
-                    } catch (BadLocationException ex) {
-                        Exceptions.printStackTrace(ex);
-                    }
+                    });
                 }
                 @Override
                 public void changedUpdate(DocumentEvent e) {}
@@ -264,14 +290,17 @@ public class TextDocumentSyncServerCapabilityHandler {
                 if (server == null)
                     return ; //ignore
 
-                DocumentStructureProvider.INSTANCE.unregister(file);
+                server.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> {
+                    DocumentStructureProvider.INSTANCE.unregister(file);
+                    DiagnosticStore.INSTANCE.unregister(file);
                 
-                TextDocumentIdentifier di = new TextDocumentIdentifier();
-                di.setUri(Utils.toURI(file));
-                DidCloseTextDocumentParams params = new DidCloseTextDocumentParams(di);
+                    TextDocumentIdentifier di = new TextDocumentIdentifier();
+                    di.setUri(Utils.toURI(file));
+                    DidCloseTextDocumentParams params = new DidCloseTextDocumentParams(di);
 
-                server.getTextDocumentService().didClose(params);
-                server.getOpenedFiles().remove(file);
+                    server.getTextDocumentService().didClose(params);
+                    server.getOpenedFiles().remove(file);
+                });
             });
             openDocument2PanesCount.remove(doc);
         }
@@ -289,33 +318,42 @@ public class TextDocumentSyncServerCapabilityHandler {
             if (server == null)
                 return ; //ignore
 
-            if (!server.getOpenedFiles().add(file)) {
-                //already opened:
-                return ;
-            }
+            server.getExecutor().post(LSPExecutor.Lane.NOTIFICATION, () -> {
+                if (server.getOpenedFiles().contains(file)) {
+                    //already opened:
+                    return ;
+                }
 
-            doc.putProperty(HyperlinkProviderImpl.class, true);
+                doc.putProperty(HyperlinkProviderImpl.class, true);
 
-            String uri = Utils.toURI(file);
-            String[] text = new String[1];
+                String uri = Utils.toURI(file);
+                String[] text = new String[1];
 
-            doc.render(() -> {
-                try {
-                    text[0] = doc.getText(0, doc.getLength());
-                } catch (BadLocationException ex) {
-                    Exceptions.printStackTrace(ex);
-                    text[0] = "";
-                }
+                doc.render(() -> {
+                    try {
+                        text[0] = doc.getText(0, doc.getLength());
+                    } catch (BadLocationException ex) {
+                        Exceptions.printStackTrace(ex);
+                        text[0] = "";
+                    }
+                    // the modifications done so far are part of the opened text
+                    PendingDocumentChanges pending = (PendingDocumentChanges) doc.getProperty(PendingDocumentChanges.class);
+                    if (pending != null) {
+                        pending.discard();
+                    }
+                });
+
+                // languageId sollte csharp sein
+                TextDocumentItem textDocumentItem = new TextDocumentItem(uri,
+                                                                         FileUtil.getMIMEType(file),
+                                                                         DocumentVersions.forDocument(doc).nextVersion(),
+                                                                         text[0]);
+
+                server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+                // marked as opened only now, until then pending changes are flushed in this lane, after the didOpen
+                server.getOpenedFiles().add(file);
+                LSPWorkingPool.scheduleBackgroundTasks(file);
             });
-
-            // languageId sollte csharp sein
-            TextDocumentItem textDocumentItem = new TextDocumentItem(uri,
-                                                                     FileUtil.getMIMEType(file),
-                                                                     0,
-                                                                     text[0]);
-
-            server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocumentItem));
-            LSPWorkingPool.scheduleBackgroundTasks(file);
         });
     }
 
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings.hints;
+
+import com.google.common.collect.MapMaker;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+import org.eclipse.lsp4j.CodeAction;
+import org.eclipse.lsp4j.CodeActionContext;
+import org.eclipse.lsp4j.CodeActionParams;
+import org.eclipse.lsp4j.Command;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.netbeans.api.editor.EditorRegistry;
+import org.netbeans.modules.lsp.client.LSPBindings;
+import org.netbeans.modules.lsp.client.LSPExecutor;
+import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.modules.lsp.client.bindings.DocumentVersions;
+import org.netbeans.modules.lsp.client.bindings.TextDocumentSyncServerCapabilityHandler;
+
+/**
+ * Requests the code actions of all diagnostics starting on the same line with
+ * a single {@code textDocument/codeAction} request. The results are kept until
+ * the document is modified.
+ *
+ * @author ranSprd
+ */
+final class CodeActionBatcher {
+
+    private static final Logger LOG = Logger.getLogger(CodeActionBatcher.class.getName());
+
+    private final LSPBindings bindings;
+    private final Map<Document, Map<Integer, Batch>> doc2Batches = new MapMaker().weakKeys().makeMap();
+
+    CodeActionBatcher(LSPBindings bindings) {
+        this.bindings = bindings;
+    }
+
+    /**
+     * @param fingerprint fingerprint of the diagnostic
+     * @return code actions for the given diagnostic
+     */
+    CompletableFuture<List<Either<Command, CodeAction>>> getActions(Document doc, String uri, long fingerprint, Diagnostic diagnostic) {
+        long stamp = DocumentVersions.forDocument(doc).stamp();
+        int line = diagnostic.getRange().getStart().getLine();
+        Batch batch;
+
+        synchronized (this) {
+            Map<Integer, Batch> line2Batch = doc2Batches.computeIfAbsent(doc, d -> new HashMap<>());
+            batch = line2Batch.get(line);
+
+            if (batch == null || batch.stamp != stamp || !batch.diagnostics.containsKey(fingerprint)) {
+                // results for older versions of the document are useless
+                line2Batch.values().removeIf(b -> b.stamp != stamp);
+                batch = new Batch(stamp, lineDiagnostics(uri, line, fingerprint, diagnostic));
+                line2Batch.put(line, batch);
+                request(doc, uri, line, batch);
+            }
+        }
+
+        return batch.result.thenApply(fp2Actions -> fp2Actions.getOrDefault(fingerprint, Collections.emptyList()));
+    }
+
+    /**
+     * request the code actions of the line with the caret, when the document
+     * is shown in the last focused editor; the caret is read in the AWT thread
+     */
+    void prefetch(Document doc, String uri, Map<Long, Diagnostic> diagnostics) {
+        if (diagnostics.isEmpty()) {
+            return ;
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            JTextComponent c = EditorRegistry.lastFocusedComponent();
+
+            if (c == null || c.getDocument() != doc) {
+                return ;
+            }
+
+            int caretLine;
+
+            try {
+                caretLine = Utils.createPosition(doc, c.getCaretPosition()).getLine();
+            } catch (BadLocationException ex) {
+                LOG.log(Level.FINE, null, ex);
+                return ;
+            }
+
+            for (Map.Entry<Long, Diagnostic> e : diagnostics.entrySet()) {
+                if (e.getValue().getRange().getStart().getLine() == caretLine) {
+                    getActions(doc, uri, e.getKey(), e.getValue());
+                    return ;
+                }
+            }
+        });
+    }
+
+    private Map<Long, Diagnostic> lineDiagnostics(String uri, int line, long fingerprint, Diagnostic diagnostic) {
+        Map<Long, Diagnostic> result = new LinkedHashMap<>();
+        DiagnosticStore.Entry entry = DiagnosticStore.INSTANCE.get(uri);
+
+        if (entry != null) {
+            for (Map.Entry<Long, Diagnostic> e : entry.getDiagnostics().entrySet()) {
+                if (e.getValue().getRange().getStart().getLine() == line) {
+                    result.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        result.put(fingerprint, diagnostic);
+        return result;
+    }
+
+    private void request(Document doc, String uri, int line, Batch batch) {
+        Position end = new Position(line, 0);
+
+        for (Diagnostic d : batch.diagnostics.values()) {
+            Position dEnd = d.getRange().getEnd();
+            if (dEnd.getLine() > end.getLine() || (dEnd.getLine() == end.getLine() && dEnd.getCharacter() > end.getCharacter())) {
+                end = dEnd;
+            }
+        }
+
+        CodeActionParams params = new CodeActionParams(new TextDocumentIdentifier(uri),
+                                                       new Range(new Position(line, 0), end),
+                                                       new CodeActionContext(new ArrayList<>(batch.diagnostics.values())));
+
+        bindings.getExecutor().post(LSPExecutor.Lane.INTERACTIVE, () -> {
+            try {
+                TextDocumentSyncServerCapabilityHandler.flushPendingChanges(doc);
+                bindings.getTextDocumentService().codeAction(params).whenComplete((actions, ex) -> {
+                    if (ex != null) {
+                        LOG.log(Level.FINE, null, ex);
+                        batch.result.complete(Collections.emptyMap());
+                    } else {
+                        batch.result.complete(distribute(batch.diagnostics, actions));
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // the request was not sent, the next request for the line retries
+                LOG.log(Level.FINE, null, ex);
+                synchronized (this) {
+                    Map<Integer, Batch> line2Batch = doc2Batches.get(doc);
+                    if (line2Batch != null) {
+                        line2Batch.remove(line, batch);
+                    }
+                }
+                batch.result.completeExceptionally(ex);
+            }
+        });
+    }
+
+    /**
+     * an action listing the diagnostics it resolves belongs to them, other
+     * actions belong to all diagnostics of the line
+     */
+    private static Map<Long, List<Either<Command, CodeAction>>> distribute(Map<Long, Diagnostic> diagnostics, List<Either<Command, CodeAction>> actions) {
+        Map<Long, List<Either<Command, CodeAction>>> result = new HashMap<>();
+
+        if (actions == null) {
+            return result;
+        }
+
+        for (Either<Command, CodeAction> action : actions) {
+            boolean assigned = false;
+
+            if (action.isRight() && action.getRight().getDiagnostics() != null) {
+                for (Diagnostic d : action.getRight().getDiagnostics()) {
+                    long fingerprint = DiagnosticStore.fingerprint(d);
+                    if (diagnostics.containsKey(fingerprint)) {
+                        result.computeIfAbsent(fingerprint, fp -> new ArrayList<>()).add(action);
+                        assigned = true;
+                    }
+                }
+            }
+            if (!assigned) {
+                for (Long fingerprint : diagnostics.keySet()) {
+                    result.computeIfAbsent(fingerprint, fp -> new ArrayList<>()).add(action);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static final class Batch {
+
+        private final long stamp;
+        private final Map<Long, Diagnostic> diagnostics;
+        private final CompletableFuture<Map<Long, List<Either<Command, CodeAction>>>> result = new CompletableFuture<>();
+
+        public Batch(long stamp, Map<Long, Diagnostic> diagnostics) {
+            this.stamp = stamp;
+            this.diagnostics = diagnostics;
+        }
+
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings.hints;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import javax.swing.text.Document;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.spi.editor.hints.ErrorDescription;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Diagnostics reported by the servers, per document. The store keeps a limited
+ * number of documents, the least recently updated ones are evicted first, and
+ * a document is removed when it is closed.
+ *
+ * Diagnostics are identified by a fingerprint computed once from the range,
+ * severity, code, source and message, so merging the lists of a version does
+ * not depend on the deep equals of the LSP structures.
+ *
+ * @author ranSprd
+ */
+public enum DiagnosticStore {
+
+    INSTANCE;
+
+    private static final int MAX_DOCUMENTS = 256;
+    // rough sizes of the objects held for a diagnostic, without the message
+    private static final int DIAGNOSTIC_SIZE = 300;
+    private static final int DESCRIPTION_SIZE = 200;
+
+    private final Cache<String, Entry> documents = CacheBuilder.newBuilder()
+                                                               .maximumSize(MAX_DOCUMENTS)
+                                                               .build();
+
+    /**
+     * Store the diagnostics of the document. Like in the protocol, a publish
+     * replaces the stored diagnostics, only diagnostics of the same
+     * (non-negative) version reported by the same server are added to them.
+     *
+     * @param owner the server reporting the diagnostics
+     * @return entry of the document
+     */
+    Entry update(Object owner, PublishDiagnosticsParams diagnostics) {
+        int version = (diagnostics.getVersion() == null) ? -1 : diagnostics.getVersion();
+        Entry entry;
+
+        try {
+            entry = documents.get(diagnostics.getUri(), () -> new Entry(owner, version));
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        if (entry.owner != owner || version <= 0 || entry.version != version) {
+            // sometimes version 0 contains broken infos, for that reason we use only the last version 0
+            Entry replaced = entry;
+            entry = new Entry(owner, version);
+            if (replaced.owner == owner) {
+                // unchanged diagnostics of the new version keep their error descriptions
+                entry.inherit(replaced);
+            }
+            documents.put(diagnostics.getUri(), entry);
+        }
+
+        entry.add(diagnostics.getDiagnostics());
+        return entry;
+    }
+
+    /**
+     * @return entry of the document, null if there are no diagnostics stored for it
+     */
+    Entry get(String uri) {
+        return documents.getIfPresent(uri);
+    }
+
+    /**
+     * forget the diagnostics of a closed document
+     */
+    public void unregister(FileObject file) {
+        if (file == null) {
+            return;
+        }
+        documents.invalidate(Utils.toURI(file));
+    }
+
+    /**
+     * @return number of documents with stored diagnostics
+     */
+    public long getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * @return number of stored diagnostics of all documents
+     */
+    public long getDiagnosticCount() {
+        long count = 0;
+
+        for (Entry entry : documents.asMap().values()) {
+            count += entry.getDiagnosticCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return estimated heap size of the stored diagnostics and error descriptions, in bytes
+     */
+    public long getEstimatedMemory() {
+        long size = 0;
+
+        for (Entry entry : documents.asMap().values()) {
+            size += entry.getEstimatedMemory();
+        }
+
+        return size;
+    }
+
+    static long fingerprint(Diagnostic d) {
+        long h = 1;
+        Range range = d.getRange();
+
+        if (range != null) {
+            h = mix(h, range.getStart().getLine());
+            h = mix(h, range.getStart().getCharacter());
+            h = mix(h, range.getEnd().getLine());
+            h = mix(h, range.getEnd().getCharacter());
+        }
+        h = mix(h, d.getSeverity() != null ? d.getSeverity().getValue() : 0);
+        h = mix(h, d.getCode() != null ? Objects.hashCode(d.getCode().get()) : 0);
+        h = mix(h, Objects.hashCode(d.getSource()));
+        h = mix(h, Objects.hashCode(d.getMessage()));
+        h = mix(h, d.getMessage() != null ? d.getMessage().length() : 0);
+
+        return h;
+    }
+
+    private static long mix(long h, int value) {
+        return (h ^ value) * 0x9E3779B97F4A7C15L;
+    }
+
+    /** diagnostics of one document, merged for the same version */
+    static final class Entry {
+
+        private final Object owner;
+        private final int version;
+        private final Map<Long, Diagnostic> diagnostics = new LinkedHashMap<>();
+        private Reference<Document> doc = new WeakReference<>(null);
+        private Map<Long, ErrorDescription> descriptions = Collections.emptyMap();
+        private boolean converted;
+        private long messageChars;
+
+        private Entry(Object owner, int version) {
+            this.owner = owner;
+            this.version = version;
+        }
+
+        private synchronized void add(List<Diagnostic> list) {
+            for (Diagnostic d : list) {
+                long key = fingerprint(d);
+                Diagnostic stored;
+                // distinct diagnostics with colliding fingerprints are stored under the next free key
+                while ((stored = diagnostics.putIfAbsent(key, d)) != null && !stored.equals(d)) {
+                    key++;
+                }
+                if (stored == null && d.getMessage() != null) {
+                    messageChars += d.getMessage().length();
+                }
+            }
+        }
+
+        /**
+         * @return the merged diagnostics by fingerprint, in the order they were reported
+         */
+        synchronized Map<Long, Diagnostic> getDiagnostics() {
+            return new LinkedHashMap<>(diagnostics);
+        }
+
+        /**
+         * @return true if error descriptions were created for this entry before
+         */
+        synchronized boolean isConverted() {
+            return converted;
+        }
+
+        /**
+         * @return error descriptions created for the given document, by fingerprint
+         */
+        synchronized Map<Long, ErrorDescription> getDescriptions(Document doc) {
+            return this.doc.get() == doc ? descriptions : Collections.emptyMap();
+        }
+
+        synchronized void setDescriptions(Document doc, Map<Long, ErrorDescription> descriptions) {
+            this.doc = new WeakReference<>(doc);
+            this.descriptions = new HashMap<>(descriptions);
+            this.converted = true;
+        }
+
+        private synchronized void inherit(Entry previous) {
+            if (previous != this) {
+                synchronized (previous) {
+                    doc = previous.doc;
+                    descriptions = previous.descriptions;
+                    converted = previous.converted;
+                }
+            }
+        }
+
+        private synchronized int getDiagnosticCount() {
+            return diagnostics.size();
+        }
+
+        private synchronized long getEstimatedMemory() {
+            return diagnostics.size() * (long) DIAGNOSTIC_SIZE + 2 * messageChars + descriptions.size() * (long) DESCRIPTION_SIZE;
+        }
+    }
+}
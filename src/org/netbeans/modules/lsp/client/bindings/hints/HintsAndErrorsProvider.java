@@ -20,29 +20,25 @@ package org.netbeans.modules.lsp.client.bindings.hints;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.swing.text.Document;
 import org.eclipse.lsp4j.CodeAction;
-import org.eclipse.lsp4j.CodeActionContext;
-import org.eclipse.lsp4j.CodeActionParams;
 import org.eclipse.lsp4j.Command;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.DiagnosticSeverity;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
-import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.netbeans.modules.lsp.client.LSPBindings;
-import org.netbeans.modules.lsp.client.LSPWorkingPool;
 import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.modules.lsp.client.bindings.DocumentVersions;
 import org.netbeans.spi.editor.hints.ChangeInfo;
 import org.netbeans.spi.editor.hints.ErrorDescription;
 import org.netbeans.spi.editor.hints.ErrorDescriptionFactory;
@@ -59,6 +55,7 @@ import org.openide.filesystems.FileObject;
  */
 public class HintsAndErrorsProvider {
     
+    private static final Logger LOG = Logger.getLogger(HintsAndErrorsProvider.class.getName());
     private static final Map<DiagnosticSeverity, Severity> severityMap = new EnumMap<>(DiagnosticSeverity.class);
     
     static {
@@ -69,88 +66,71 @@ public class HintsAndErrorsProvider {
     }
     
     private final LSPBindings bindings;
-    private final Map<String, ListMerger> cachedLists = new HashMap<>();
+    private final CodeActionBatcher codeActions;
 
     public HintsAndErrorsProvider(LSPBindings bindings) {
         this.bindings = bindings;
+        this.codeActions = new CodeActionBatcher(bindings);
     }
     
     /**
-     * Build a list of ErrorDescription from given LSP struct.
+     * Build a list of ErrorDescription from given LSP struct. Diagnostics
+     * which were already converted for the document, and still map to the same
+     * offsets, keep their ErrorDescription.
      * 
      * @param diagnostics data from LSP 
      * @param file
      * @param doc
-     * @return 
+     * @return the error descriptions, null if they did not change since the last call
      */
     public List<ErrorDescription> transform(PublishDiagnosticsParams diagnostics, FileObject file, Document doc) {
-        List<ErrorDescription> errorDescriptions = get(diagnostics).combinedStream(diagnostics.getDiagnostics())
-//        List<ErrorDescription> errorDescriptions = diagnostics.getDiagnostics().stream()
-                .map(d -> createHintsAndErrors(doc, file, diagnostics.getUri(), d))
-                .collect(Collectors.toList());
-        return errorDescriptions;
-    }
-
-    private ErrorDescription createHintsAndErrors(Document doc, FileObject file, String uri, org.eclipse.lsp4j.Diagnostic d) {
-        LazyFixList fixList = new DiagnosticFixList(uri, d);
-        return ErrorDescriptionFactory.createErrorDescription(severityMap.get(d.getSeverity()), d.getMessage(), fixList, file, Utils.getOffset(doc, d.getRange().getStart()), Utils.getOffset(doc, d.getRange().getEnd()));
-    }
-    
-    /** 
-     *  Server can send several lists (with different content) for the same file version, for that reason
-     *  previous send lists are cached and combined with later arrived lists. 
-     */
-    private ListMerger get(PublishDiagnosticsParams diagnostics) {
-        int diagnosticVersion = (diagnostics.getVersion() == null)?-1:diagnostics.getVersion();
-
-        ListMerger listMerger = cachedLists.get(diagnostics.getUri());
-        if (listMerger == null || diagnosticVersion == 0) {
-            // sometimes version 0 contains broken infos, for that reason we use only the last version 0
-            listMerger = new ListMerger(diagnosticVersion);
-            cachedLists.put(diagnostics.getUri(), listMerger);
-        } else if (listMerger.version < diagnosticVersion) {
-            // incoming data for a newer version, throw the old stuff away
-            listMerger = new ListMerger(diagnosticVersion);
-            cachedLists.put(diagnostics.getUri(), listMerger);
-        } else if (listMerger.version > diagnosticVersion) {
-            // uuupppps, that is crazy
+        DiagnosticStore.Entry entry = DiagnosticStore.INSTANCE.update(bindings, diagnostics);
+        Map<Long, Diagnostic> combined = entry.getDiagnostics();
+        int[] offsets = Utils.getOffsets(doc, combined.values().stream().map(d -> d.getRange()).collect(Collectors.toList()));
+        Map<Long, ErrorDescription> previousDescriptions = entry.getDescriptions(doc);
+        Map<Long, ErrorDescription> descriptions = new HashMap<>();
+        List<ErrorDescription> errorDescriptions = new ArrayList<>(combined.size());
+        boolean changed = !entry.isConverted() || previousDescriptions.size() != combined.size();
+        int i = 0;
+        for (Map.Entry<Long, Diagnostic> e : combined.entrySet()) {
+            int start = offsets[2 * i];
+            int end = offsets[2 * i + 1];
+            ErrorDescription ed = previousDescriptions.get(e.getKey());
+            if (ed == null || ed.getRange().getBegin().getOffset() != start || ed.getRange().getEnd().getOffset() != end) {
+                ed = createHintsAndErrors(file, doc, diagnostics.getUri(), e.getKey(), e.getValue(), start, end);
+                changed = true;
+            }
+            descriptions.put(e.getKey(), ed);
+            errorDescriptions.add(ed);
+            i++;
         }
-        
-        return listMerger;
+        entry.setDescriptions(doc, descriptions);
+        codeActions.prefetch(doc, diagnostics.getUri(), combined);
+        return changed ? errorDescriptions : null;
     }
-    
-    /** merge list of the same version */
-    private class ListMerger {
-
-        private final int version;
-        private final Set<org.eclipse.lsp4j.Diagnostic> allDiagnosticItems = new HashSet<>();
-
-        public ListMerger(int version) {
-            this.version = version;
-        }
-
-        public int getVersion() {
-            return version;
-        }
-        
-        public Stream<Diagnostic> combinedStream(List<Diagnostic> list) {
-            allDiagnosticItems.addAll(list);
-            return allDiagnosticItems.stream();
-        }
 
+    private ErrorDescription createHintsAndErrors(FileObject file, Document doc, String uri, long fingerprint, org.eclipse.lsp4j.Diagnostic d, int start, int end) {
+        LazyFixList fixList = new DiagnosticFixList(doc, uri, fingerprint, d);
+        return ErrorDescriptionFactory.createErrorDescription(severityMap.get(d.getSeverity()), d.getMessage(), fixList, file, start, end);
     }
     
     private final class DiagnosticFixList implements LazyFixList {
 
         private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+        private final Document doc;
         private final String fileUri;
+        private final long fingerprint;
         private final Diagnostic diagnostic;
         private List<Fix> fixes;
         private boolean computing;
         private boolean computed;
+        // document stamp the fixes were computed for
+        private long computedStamp = -1;
 
-        public DiagnosticFixList(String fileUri, Diagnostic diagnostic) {
+        public DiagnosticFixList(Document doc, String fileUri, long fingerprint, Diagnostic diagnostic) {
+            this.doc = doc;
             this.fileUri = fileUri;
+            this.fingerprint = fingerprint;
             this.diagnostic = diagnostic;
         }
 
@@ -171,27 +151,30 @@ public class HintsAndErrorsProvider {
 
         @Override
         public synchronized List<Fix> getFixes() {
-            if (!computing && !computed) {
+            long stamp = DocumentVersions.forDocument(doc).stamp();
+            if (!computing && computedStamp != stamp) {
                 computing = true;
-                LSPWorkingPool.runOnBackground(() -> {
-                    try {
-                        List<Either<Command, CodeAction>> commands =
-                                bindings.getTextDocumentService().codeAction(new CodeActionParams(new TextDocumentIdentifier(fileUri),
-                                        diagnostic.getRange(),
-                                        new CodeActionContext(Collections.singletonList(diagnostic)))).get();
-                        List<Fix> newFixes = commands.stream()
-                                                  .map(cmd -> new CommandBasedFix(cmd))
-                                                  .collect(Collectors.toList());
+                // all diagnostics of the line are resolved with one request
+                codeActions.getActions(doc, fileUri, fingerprint, diagnostic).whenComplete((commands, ex) -> {
+                    if (ex != null) {
+                        LOG.log(Level.FINE, null, ex);
                         synchronized (this) {
-                            this.fixes = Collections.unmodifiableList(newFixes);
-                            this.computed = true;
+                            // computed again when the fixes are asked for next time
                             this.computing = false;
                         }
-                        pcs.firePropertyChange(PROP_COMPUTED, null, null);
-                        pcs.firePropertyChange(PROP_FIXES, null, null);
-                    } catch (InterruptedException | ExecutionException ex) {
-//                        Exceptions.printStackTrace(ex);
+                        return ;
+                    }
+                    List<Fix> newFixes = commands.stream()
+                                              .map(cmd -> new CommandBasedFix(cmd))
+                                              .collect(Collectors.toList());
+                    synchronized (this) {
+                        this.fixes = Collections.unmodifiableList(newFixes);
+                        this.computed = true;
+                        this.computing = false;
+                        this.computedStamp = stamp;
                     }
+                    pcs.firePropertyChange(PROP_COMPUTED, null, null);
+                    pcs.firePropertyChange(PROP_FIXES, null, null);
                 });
             }
             return fixes;
@@ -18,21 +18,27 @@
  */
 package org.netbeans.modules.lsp.client.bindings.symbols;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.swing.Icon;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
 import org.netbeans.api.project.FileOwnerQuery;
@@ -56,87 +62,306 @@ import org.openide.util.Exceptions;
  */
 public class BaseSymbolProvider {
 
-    private static final Pattern WORD_START = Pattern.compile("(^|[^\\p{L}])(\\p{L})");
+    private static final Logger LOG = Logger.getLogger(BaseSymbolProvider.class.getName());
+    // project of the symbols' folders, the owner of a folder rarely changes while a dialog is used
+    private static final Cache<String, Optional<ProjectInformation>> folder2Project =
+            CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
     private final AtomicBoolean cancel = new AtomicBoolean();
-    private CompletableFuture<List<? extends SymbolInformation>> currentQuery;
+    private Search currentSearch;
+    private volatile CompletableFuture<?> currentWait;
 
     public String name() {
         // @todo use a more specific name here? moduleName of implementation?
         return "lsp-client";
     }
 
-    public void computeSymbolNames(SearchType searchType, String searchText, BiConsumer<SymbolInformation, String> found) {
+    /**
+     * Pass the symbols of the servers matching the search to {@code found}.
+     * The servers are queried in parallel, the results are reported as soon
+     * as the first server answers. If some servers did not answer yet,
+     * {@code pending} is run and the dialog calls again, the next call reports
+     * the results of all servers answered so far. Matching symbols of the
+     * {@link SymbolIndex} are reported immediately, unless a server reported
+     * the same symbol.
+     */
+    public void computeSymbolNames(SearchType searchType, String searchText, BiConsumer<SymbolInformation, String> found, Runnable pending) {
         cancel.set(false);
 
-        List<CompletableFuture<List<? extends SymbolInformation>>> queries = new ArrayList<>();
+        Search search;
 
-        try {
-            for (LSPBindings binding : LSPBindingFactory.getAllBindings()) {
-                if (cancel.get()) {
-                    return ;
+        synchronized (this) {
+            if (currentSearch == null || currentSearch.type != searchType || !currentSearch.text.equals(searchText)) {
+                if (currentSearch != null) {
+                    currentSearch.cancel();
                 }
-                queries.add(binding.getWorkspaceService().symbol(new WorkspaceSymbolParams(searchText)));
+                currentSearch = new Search(searchType, searchText);
+            }
+            search = currentSearch;
+        }
+
+        CompletableFuture<?> next = search.nextAnswer();
+
+        if (next != null) {
+            currentWait = next;
+            try {
+                next.get();
+            } catch (InterruptedException | CancellationException ex) {
+                return ;
+            } catch (ExecutionException ex) {
+                LOG.log(Level.FINE, null, ex);
+            } finally {
+                currentWait = null;
             }
+        }
 
-            NameMatcher matcher = NameMatcherFactory.createNameMatcher(searchText, searchType);
+        Set<String> reported = new HashSet<>();
 
-            while (!queries.isEmpty()) {
+        for (Query query : search.answered()) {
+            for (Match match : query.getMatches(search.matcher, search.firstChar, cancel)) {
                 if (cancel.get()) {
                     return ;
                 }
+                reported.add(match.key());
+                found.accept(match.info, match.namePart);
+            }
+        }
+
+        for (Match match : search.indexed) {
+            if (cancel.get()) {
+                return ;
+            }
+            if (!reported.contains(match.key())) {
+                found.accept(match.info, match.namePart);
+            }
+        }
+
+        if (!search.isDone()) {
+            pending.run();
+        } else {
+            synchronized (this) {
+                // the next identical search asks the servers again
+                if (currentSearch == search) {
+                    currentSearch = null;
+                }
+            }
+        }
+    }
+
+    public void cancel() {
+        cancel.set(true);
+        CompletableFuture<?> wait = currentWait;
+        if (wait != null) {
+            wait.cancel(true);
+        }
+        synchronized (this) {
+            if (currentSearch != null) {
+                currentSearch.cancel();
+                currentSearch = null;
+            }
+        }
+    }
 
+    public void cleanup() {
+        synchronized (this) {
+            if (currentSearch != null) {
+                currentSearch.cancel();
+                currentSearch = null;
+            }
+        }
+    }
 
-                try {
-                    currentQuery = queries.remove(queries.size() - 1);
+    private static Optional<ProjectInformation> getProjectInformation(String uri) {
+        String folder = uri.substring(0, uri.lastIndexOf('/') + 1);
 
-                    List<? extends SymbolInformation> infos = currentQuery.get();
+        if (folder.isEmpty()) {
+            return Optional.empty();
+        }
 
-                    currentQuery = null;
+        try {
+            return folder2Project.get(folder, () -> {
+                Project owningProject = FileOwnerQuery.getOwner(URI.create(folder));
+
+                return owningProject != null ? Optional.of(ProjectUtils.getInformation(owningProject))
+                                             : Optional.<ProjectInformation>empty();
+            });
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return Optional.empty();
+        }
+    }
 
-                    if (infos != null) {
-                        for (SymbolInformation info : infos) {
-                            if (cancel.get()) {
-                                return ;
-                            }
-                            Matcher wordStartMatcher = WORD_START.matcher(info.getName());
-                            while (wordStartMatcher.find()) {
-                                int nameStart = wordStartMatcher.start(2);
-                                String namePart = info.getName().substring(nameStart);
-                                if (matcher.accept(namePart)) {
-                                    found.accept(info, namePart);
-                                }
-                            }
-                        }
-                    }
-                } catch (InterruptedException ex) {
-                    //ignore?
-                } catch (CancellationException ex) {
-                    return ;
-                } catch (ExecutionException ex) {
-                    LOG.log(Level.FINE, null, ex);
+    /** workspace/symbol sent to all servers for one search text */
+    private static final class Search {
+
+        private final SearchType type;
+        private final String text;
+        private final NameMatcher matcher;
+        // all name parts accepted by a non regexp matcher start with this character, ignoring case
+        private final int firstChar;
+        private final List<Query> queries = new ArrayList<>();
+        private final List<Match> indexed = new ArrayList<>();
+        private int reportedAnswers;
+        private boolean reported;
+
+        public Search(SearchType type, String text) {
+            this.type = type;
+            this.text = text;
+            this.matcher = NameMatcherFactory.createNameMatcher(text, type);
+            this.firstChar = type != SearchType.REGEXP && type != SearchType.CASE_INSENSITIVE_REGEXP && !text.isEmpty()
+                    ? Character.toLowerCase(text.charAt(0)) : -1;
+            for (LSPBindings binding : LSPBindingFactory.getAllBindings()) {
+                queries.add(new Query(binding.getWorkspaceService().symbol(new WorkspaceSymbolParams(text))));
+            }
+            for (SymbolInformation info : SymbolIndex.find(type, text, name -> Query.nextNamePart(name, 0, matcher, firstChar) != -1)) {
+                Query.match(info, matcher, firstChar, indexed);
+            }
+        }
+
+        /**
+         * @return future completed when another server answers, null if there
+         *         are unreported answers or indexed symbols, or all servers answered
+         */
+        synchronized CompletableFuture<?> nextAnswer() {
+            if (!reported && !indexed.isEmpty()) {
+                return null;
+            }
+
+            List<CompletableFuture<?>> unanswered = new ArrayList<>();
+
+            for (Query query : queries) {
+                if (!query.result.isDone()) {
+                    unanswered.add(query.result);
                 }
             }
-        } finally {
-            if (cancel.get()) {
-                if (currentQuery != null) {
-                    currentQuery.cancel(true);
+
+            if (unanswered.isEmpty() || queries.size() - unanswered.size() > reportedAnswers) {
+                return null;
+            }
+
+            return CompletableFuture.anyOf(unanswered.toArray(new CompletableFuture<?>[0]));
+        }
+
+        synchronized List<Query> answered() {
+            List<Query> result = new ArrayList<>();
+
+            for (Query query : queries) {
+                if (query.result.isDone()) {
+                    result.add(query);
                 }
-                queries.forEach(cf -> cf.cancel(true));
             }
-            currentQuery = null;
+
+            reportedAnswers = result.size();
+            reported = true;
+            return result;
+        }
+
+        synchronized boolean isDone() {
+            return reportedAnswers == queries.size();
+        }
+
+        void cancel() {
+            for (Query query : queries) {
+                query.result.cancel(true);
+            }
         }
     }
 
-    private static final Logger LOG = Logger.getLogger(BaseSymbolProvider.class.getName());
+    /** answer of one server, matched once and reported on every call until the search is done */
+    private static final class Query {
 
-    public void cancel() {
-        cancel.set(true);
-        if (currentQuery != null) {
-            currentQuery.cancel(true);
+        private final CompletableFuture<List<? extends SymbolInformation>> result;
+        private List<Match> matches;
+
+        public Query(CompletableFuture<List<? extends SymbolInformation>> result) {
+            this.result = result;
+        }
+
+        synchronized List<Match> getMatches(NameMatcher matcher, int firstChar, AtomicBoolean cancel) {
+            if (matches != null) {
+                return matches;
+            }
+
+            List<? extends SymbolInformation> infos;
+
+            try {
+                infos = result.join();
+            } catch (CancellationException | CompletionException ex) {
+                LOG.log(Level.FINE, null, ex);
+                infos = null;
+            }
+
+            if (infos != null) {
+                SymbolIndex.workspaceSymbols(infos);
+            }
+
+            List<Match> found = new ArrayList<>();
+
+            if (infos != null) {
+                for (SymbolInformation info : infos) {
+                    if (cancel.get()) {
+                        // not complete, matched again by the next call
+                        return found;
+                    }
+                    match(info, matcher, firstChar, found);
+                }
+            }
+
+            return matches = found;
+        }
+
+        /**
+         * the name is matched from every start of a word, the name part is
+         * only created for starts which can match
+         */
+        private static void match(SymbolInformation info, NameMatcher matcher, int firstChar, List<Match> found) {
+            String name = info.getName();
+
+            for (int i = nextNamePart(name, 0, matcher, firstChar); i != -1; i = nextNamePart(name, i + 1, matcher, firstChar)) {
+                found.add(new Match(info, name.substring(i)));
+            }
+        }
+
+        /**
+         * @return start of the next accepted name part, starting at or after the given index, -1 if there is none
+         */
+        static int nextNamePart(String name, int from, NameMatcher matcher, int firstChar) {
+            boolean previousLetter = from > 0 && Character.isLetter(name.charAt(from - 1));
+
+            for (int i = from; i < name.length(); i++) {
+                char c = name.charAt(i);
+                boolean letter = Character.isLetter(c);
+
+                if (letter && !previousLetter && (firstChar == -1 || Character.toLowerCase(c) == firstChar)
+                    && matcher.accept(name.substring(i))) {
+                    return i;
+                }
+                previousLetter = letter;
+            }
+
+            return -1;
         }
     }
 
-    public void cleanup() {
+    private static final class Match {
+
+        private final SymbolInformation info;
+        private final String namePart;
+
+        public Match(SymbolInformation info, String namePart) {
+            this.info = info;
+            this.namePart = namePart;
+        }
+
+        /**
+         * servers report the symbols with the range of the declaration or
+         * of the name, only the line is compared
+         */
+        String key() {
+            Position start = info.getLocation().getRange().getStart();
+            return info.getLocation().getUri() + ':' + start.getLine() + ':' + namePart;
+        }
+
     }
 
     public static interface BaseSymbolDescriptor {
@@ -173,17 +398,7 @@ public class BaseSymbolProvider {
 
         //XXX: should be private:
         public default Optional<ProjectInformation> getProjectInformation() {
-            FileObject file = getFileObject();
-
-            if (file != null) {
-                Project owningProject = FileOwnerQuery.getOwner(file);
-
-                if (owningProject != null) {
-                    return Optional.of(ProjectUtils.getInformation(owningProject));
-                }
-            }
-
-            return Optional.empty();
+            return BaseSymbolProvider.getProjectInformation(getInfo().getLocation().getUri());
         }
 
         public default FileObject getFileObject() {
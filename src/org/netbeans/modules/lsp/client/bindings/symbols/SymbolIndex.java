@@ -0,0 +1,488 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.bindings.symbols;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.netbeans.modules.lsp.client.Utils;
+import org.netbeans.spi.jumpto.type.SearchType;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.filesystems.URLMapper;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Symbols of a source root, kept in the index folder of the root so Go To
+ * Symbol/Type can answer before the servers finished their own indexing. The
+ * index is fed from the {@code documentSymbol} and {@code workspace/symbol}
+ * results received from the servers, the symbols of modified and deleted files
+ * are dropped when the root is indexed.
+ *
+ * Names are looked up by their trigrams, or by the first character of their
+ * words for camel case searches; both are computed when the index is loaded
+ * and not stored.
+ *
+ * @author ranSprd
+ */
+public final class SymbolIndex {
+
+    private static final Logger LOG = Logger.getLogger(SymbolIndex.class.getName());
+    private static final RequestProcessor WORKER = new RequestProcessor(SymbolIndex.class.getName(), 1, false, false);
+    private static final String INDEX_FILE_NAME = "symbols.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final int SAVE_DELAY = 5000;
+
+    private static final Map<String, SymbolIndex> root2Index = new ConcurrentHashMap<>();
+
+    private final String rootUri;
+    private final File indexFile;
+    private final Map<String, Set<Entry>> file2Symbols = new HashMap<>();
+    private final Map<Long, Set<Entry>> trigram2Symbols = new HashMap<>();
+    private final Map<Character, Set<Entry>> wordStart2Symbols = new HashMap<>();
+    private final RequestProcessor.Task save;
+
+    private SymbolIndex(String rootUri, File indexFile) {
+        this.rootUri = rootUri;
+        this.indexFile = indexFile;
+        this.save = WORKER.create(this::save);
+    }
+
+    /**
+     * @return index of the given root, loaded from the index folder when the root is used first
+     */
+    public static SymbolIndex forRoot(FileObject root, FileObject indexFolder) {
+        String rootUri = toRootURI(Utils.toURI(root));
+
+        return root2Index.computeIfAbsent(rootUri, uri -> {
+            File folder = FileUtil.toFile(indexFolder);
+            SymbolIndex index = new SymbolIndex(uri, folder != null ? new File(folder, INDEX_FILE_NAME) : null);
+
+            index.load();
+            return index;
+        });
+    }
+
+    public static void rootsRemoved(Iterable<? extends URL> roots) {
+        for (URL root : roots) {
+            try {
+                FileObject rootFile = URLMapper.findFileObject(root);
+                String rootUri = rootFile != null ? Utils.toURI(rootFile) : root.toURI().toString();
+
+                root2Index.remove(toRootURI(rootUri));
+            } catch (URISyntaxException ex) {
+                LOG.log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * drop the symbols of the given files, they are outdated
+     *
+     * @param relativePaths paths relative to the root
+     */
+    public synchronized void filesChanged(Iterable<String> relativePaths) {
+        boolean modified = false;
+
+        for (String relativePath : relativePaths) {
+            modified |= removeFile(relativePath);
+        }
+
+        if (modified) {
+            save.schedule(SAVE_DELAY);
+        }
+    }
+
+    /**
+     * replace the symbols of a file by its document symbols
+     */
+    public static void documentSymbols(String uri, List<Either<SymbolInformation, DocumentSymbol>> symbols) {
+        SymbolIndex index = findIndex(uri);
+
+        if (index == null || symbols == null) {
+            return ;
+        }
+
+        String relativePath = uri.substring(index.rootUri.length());
+        List<Entry> entries = new ArrayList<>();
+
+        for (Either<SymbolInformation, DocumentSymbol> symbol : symbols) {
+            if (symbol.isLeft()) {
+                SymbolInformation info = symbol.getLeft();
+                entries.add(new Entry(info.getName(), info.getKind(), info.getContainerName(), relativePath, info.getLocation().getRange()));
+            } else {
+                addDocumentSymbol(symbol.getRight(), null, relativePath, entries);
+            }
+        }
+
+        synchronized (index) {
+            index.removeFile(relativePath);
+            for (Entry entry : entries) {
+                index.add(entry);
+            }
+            index.save.schedule(SAVE_DELAY);
+        }
+    }
+
+    private static void addDocumentSymbol(DocumentSymbol symbol, String container, String relativePath, List<Entry> entries) {
+        Range range = symbol.getSelectionRange() != null ? symbol.getSelectionRange() : symbol.getRange();
+
+        entries.add(new Entry(symbol.getName(), symbol.getKind(), container, relativePath, range));
+
+        if (symbol.getChildren() != null) {
+            for (DocumentSymbol child : symbol.getChildren()) {
+                addDocumentSymbol(child, symbol.getName(), relativePath, entries);
+            }
+        }
+    }
+
+    /**
+     * add the symbols found by a server, symbols already known are ignored
+     */
+    public static void workspaceSymbols(Collection<? extends SymbolInformation> infos) {
+        Set<SymbolIndex> modified = new HashSet<>();
+
+        for (SymbolInformation info : infos) {
+            String uri = info.getLocation().getUri();
+            SymbolIndex index = findIndex(uri);
+
+            if (index == null) {
+                continue;
+            }
+
+            Entry entry = new Entry(info.getName(), info.getKind(), info.getContainerName(), uri.substring(index.rootUri.length()), info.getLocation().getRange());
+
+            synchronized (index) {
+                if (index.add(entry)) {
+                    modified.add(index);
+                }
+            }
+        }
+
+        for (SymbolIndex index : modified) {
+            index.save.schedule(SAVE_DELAY);
+        }
+    }
+
+    /**
+     * @param accepts matcher of the names, symbols are only created for the accepted names
+     * @return symbols of all roots with a name accepted for the given search
+     */
+    static List<SymbolInformation> find(SearchType searchType, String searchText, Predicate<String> accepts) {
+        List<SymbolInformation> result = new ArrayList<>();
+        boolean contained = searchText.length() >= 3
+                            && (searchType == SearchType.EXACT_NAME || searchType == SearchType.CASE_INSENSITIVE_EXACT_NAME
+                                || searchType == SearchType.PREFIX || searchType == SearchType.CASE_INSENSITIVE_PREFIX);
+        // all other searches but regular expressions match from a word start with the first character
+        boolean wordStart = !searchText.isEmpty() && searchType != SearchType.REGEXP && searchType != SearchType.CASE_INSENSITIVE_REGEXP;
+
+        for (SymbolIndex index : root2Index.values()) {
+            synchronized (index) {
+                if (contained) {
+                    index.collect(index.candidates(searchText.toLowerCase(Locale.ROOT)), accepts, result);
+                } else if (wordStart) {
+                    index.collect(index.wordStart2Symbols.getOrDefault(Character.toLowerCase(searchText.charAt(0)), Collections.emptySet()), accepts, result);
+                } else {
+                    for (Set<Entry> entries : index.file2Symbols.values()) {
+                        index.collect(entries, accepts, result);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void collect(Collection<Entry> entries, Predicate<String> accepts, List<SymbolInformation> result) {
+        for (Entry entry : entries) {
+            if (accepts.test(entry.name)) {
+                result.add(entry.toSymbolInformation(rootUri));
+            }
+        }
+    }
+
+    /**
+     * a name containing the text contains all trigrams of the text, the
+     * smallest set of symbols with one of them is checked for the others
+     */
+    private Collection<Entry> candidates(String lowerCaseText) {
+        Set<Entry> smallest = null;
+
+        for (int i = 0; i + 3 <= lowerCaseText.length(); i++) {
+            Set<Entry> symbols = trigram2Symbols.get(trigram(lowerCaseText, i));
+            if (symbols == null) {
+                return Collections.emptyList();
+            }
+            if (smallest == null || symbols.size() < smallest.size()) {
+                smallest = symbols;
+            }
+        }
+
+        List<Entry> result = new ArrayList<>();
+
+        for (Entry entry : smallest) {
+            if (entry.lowerCaseName.contains(lowerCaseText)) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    private static SymbolIndex findIndex(String uri) {
+        for (SymbolIndex index : root2Index.values()) {
+            if (uri.startsWith(index.rootUri)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static String toRootURI(String uri) {
+        return uri.endsWith("/") ? uri : uri + "/";
+    }
+
+    private static long trigram(String lowerCaseName, int start) {
+        return ((long) lowerCaseName.charAt(start) << 32) | ((long) lowerCaseName.charAt(start + 1) << 16) | lowerCaseName.charAt(start + 2);
+    }
+
+    /**
+     * @return false if the symbol is known already
+     */
+    private boolean add(Entry entry) {
+        if (!file2Symbols.computeIfAbsent(entry.relativePath, p -> new LinkedHashSet<>()).add(entry)) {
+            return false;
+        }
+        for (int i = 0; i + 3 <= entry.lowerCaseName.length(); i++) {
+            trigram2Symbols.computeIfAbsent(trigram(entry.lowerCaseName, i), t -> new HashSet<>()).add(entry);
+        }
+        for (char c : entry.wordStarts()) {
+            wordStart2Symbols.computeIfAbsent(c, t -> new HashSet<>()).add(entry);
+        }
+        return true;
+    }
+
+    private static <K> void removePosting(Map<K, Set<Entry>> postings, K key, Entry entry) {
+        Set<Entry> symbols = postings.get(key);
+        if (symbols != null) {
+            symbols.remove(entry);
+            if (symbols.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private boolean removeFile(String relativePath) {
+        Set<Entry> entries = file2Symbols.remove(relativePath);
+
+        if (entries == null) {
+            return false;
+        }
+
+        for (Entry entry : entries) {
+            for (int i = 0; i + 3 <= entry.lowerCaseName.length(); i++) {
+                removePosting(trigram2Symbols, trigram(entry.lowerCaseName, i), entry);
+            }
+            for (char c : entry.wordStarts()) {
+                removePosting(wordStart2Symbols, c, entry);
+            }
+        }
+
+        return true;
+    }
+
+    private void load() {
+        if (indexFile == null || !indexFile.canRead()) {
+            return ;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return ;
+            }
+            int files = in.readInt();
+            synchronized (this) {
+                for (int f = 0; f < files; f++) {
+                    String relativePath = in.readUTF();
+                    int symbols = in.readInt();
+                    for (int s = 0; s < symbols; s++) {
+                        String name = in.readUTF();
+                        SymbolKind kind = SymbolKind.forValue(in.readByte());
+                        String container = in.readUTF();
+                        Range range = new Range(new Position(in.readInt(), in.readInt()), new Position(in.readInt(), in.readInt()));
+                        add(new Entry(name, kind, container.isEmpty() ? null : container, relativePath, range));
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            //broken index, will be filled again
+            LOG.log(Level.FINE, null, ex);
+            synchronized (this) {
+                file2Symbols.clear();
+                trigram2Symbols.clear();
+                wordStart2Symbols.clear();
+            }
+        }
+    }
+
+    private void save() {
+        if (indexFile == null) {
+            return ;
+        }
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(data)) {
+            synchronized (this) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(file2Symbols.size());
+                for (Map.Entry<String, Set<Entry>> e : file2Symbols.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().size());
+                    for (Entry entry : e.getValue()) {
+                        out.writeUTF(entry.name);
+                        out.writeByte(entry.kind.getValue());
+                        out.writeUTF(entry.container != null ? entry.container : "");
+                        out.writeInt(entry.startLine);
+                        out.writeInt(entry.startCharacter);
+                        out.writeInt(entry.endLine);
+                        out.writeInt(entry.endCharacter);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return ;
+        }
+
+        // written aside and renamed, a crash does not leave a truncated index
+        File temp = new File(indexFile.getParentFile(), INDEX_FILE_NAME + ".new");
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            data.writeTo(out);
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return ;
+        }
+
+        if (!temp.renameTo(indexFile) && (!indexFile.delete() || !temp.renameTo(indexFile))) {
+            LOG.log(Level.FINE, "Cannot replace {0}", indexFile);
+        }
+    }
+
+    /** one symbol, the location is stored relative to the root */
+    private static final class Entry {
+
+        private final String name;
+        private final String lowerCaseName;
+        private final SymbolKind kind;
+        private final String container;
+        private final String relativePath;
+        private final int startLine;
+        private final int startCharacter;
+        private final int endLine;
+        private final int endCharacter;
+
+        public Entry(String name, SymbolKind kind, String container, String relativePath, Range range) {
+            this.name = name;
+            this.lowerCaseName = name.toLowerCase(Locale.ROOT);
+            this.kind = kind != null ? kind : SymbolKind.Null;
+            this.container = container;
+            this.relativePath = relativePath;
+            this.startLine = range.getStart().getLine();
+            this.startCharacter = range.getStart().getCharacter();
+            this.endLine = range.getEnd().getLine();
+            this.endCharacter = range.getEnd().getCharacter();
+        }
+
+        /**
+         * @return lower case first characters of the words of the name, as matched by the searches
+         */
+        char[] wordStarts() {
+            StringBuilder result = new StringBuilder();
+            boolean previousLetter = false;
+
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                boolean letter = Character.isLetter(c);
+
+                if (letter && !previousLetter) {
+                    result.append(Character.toLowerCase(c));
+                }
+                previousLetter = letter;
+            }
+
+            return result.toString().toCharArray();
+        }
+
+        SymbolInformation toSymbolInformation(String rootUri) {
+            Range range = new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter));
+            SymbolInformation info = new SymbolInformation(name, kind, new Location(rootUri + relativePath, range));
+
+            info.setContainerName(container);
+            return info;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + startLine * 17 + startCharacter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) obj;
+            return name.equals(other.name) && kind == other.kind && relativePath.equals(other.relativePath)
+                   && startLine == other.startLine && startCharacter == other.startCharacter;
+        }
+
+    }
+}
@@ -43,7 +43,8 @@ public class SymbolProviderImpl extends BaseSymbolProvider implements SymbolProv
     public void computeSymbolNames(Context context, Result result) {
         computeSymbolNames(context.getSearchType(), 
             context.getText(), 
-                    (info, simpleName) -> result.addResult(new SymbolDescriptorImpl(info, simpleName)));
+                    (info, simpleName) -> result.addResult(new SymbolDescriptorImpl(info, simpleName)),
+                    result::pendingResult);
     }
 
     private static class SymbolDescriptorImpl extends SymbolDescriptor implements BaseSymbolDescriptor {
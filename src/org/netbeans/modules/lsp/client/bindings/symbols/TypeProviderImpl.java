@@ -55,7 +55,8 @@ public class TypeProviderImpl extends BaseSymbolProvider implements TypeProvider
                                if (TYPE_KINDS.contains(info.getKind())) {
                                    result.addResult(new TypeDescriptorImpl(info, simpleName));
                                }
-                           });
+                           },
+                           result::pendingResult);
     }
 
     public static class TypeDescriptorImpl extends TypeDescriptor implements BaseSymbolDescriptor {
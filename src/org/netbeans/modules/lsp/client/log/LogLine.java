@@ -19,6 +19,10 @@ public class LogLine {
     public static LogLine info(String message) {
         return new LogLine(Severity.HINT, message);
     }
+
+    static LogLine create(Severity level, long timestamp, String message) {
+        return new LogLine(level, timestamp, message);
+    }
     
     
     private final Severity level;
@@ -1,12 +1,21 @@
 package org.netbeans.modules.lsp.client.log;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.swing.Timer;
 import javax.swing.table.AbstractTableModel;
 import org.netbeans.spi.editor.hints.Severity;
 
 /**
+ * Keeps the last log lines in a fixed size ring buffer. Lines are added
+ * without locking from the threads delivering the messages, the table model
+ * picks up new lines periodically in the event dispatch thread.
  *
  * @author ranSprd
  */
@@ -15,15 +24,35 @@ public enum LogStorage {
     ALL;
     
     
-    private int maxCapacity = 5000;
-    private boolean enabled = false;
-    private boolean consoleLogging = false;
-    private final List<LogLine> lines = new ArrayList<>();
+    private static final int REFRESH_DELAY = 200;
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final int maxCapacity = 5000;
+    private volatile boolean enabled = false;
+    private volatile boolean consoleLogging = false;
+
+    // sequence number of the next line, the slot of a line is sequence % maxCapacity
+    private final AtomicLong next = new AtomicLong();
+    // sequence number of the line completely written to a slot, -1 for an empty slot
+    private final AtomicLongArray published = new AtomicLongArray(maxCapacity);
+    private final long[] timestamps = new long[maxCapacity];
+    private final byte[] severities = new byte[maxCapacity];
+    private final String[] servers = new String[maxCapacity];
+    private final String[] messages = new String[maxCapacity];
+    // lines before this sequence number were cleared
+    private volatile long clearedBefore;
+
     private final LogTableModel tableModel = new LogTableModel();
     
+    private LogStorage() {
+        for (int i = 0; i < maxCapacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
     public void clear() {
-        lines.clear();
-        tableModel.fireTableDataChanged();
+        clearedBefore = next.get();
+        tableModel.scheduleRefresh();
     }
     
     public void enableLogging() {
@@ -66,27 +95,40 @@ public enum LogStorage {
     
     /** register/print a log message (or throw away if logging is disabled) */
     public LogStorage add(LogLine line) {
+        return add(null, line);
+    }
+
+    /**
+     * register/print a log message of a server (or throw away if logging is disabled)
+     *
+     * @param server name of the server, may be null
+     */
+    public LogStorage add(String server, LogLine line) {
         
         if (!enabled) {
             return this;
         }
         
-        int lastLineIndex = lines.size();
-        
         // prevent adding the same log line several times
-        if (!lines.isEmpty()) {
-            LogLine lastLine = lines.get(lastLineIndex-1);
-            if (Objects.equals(lastLine.getMessage(), line.getMessage())) {
+        long last = next.get() - 1;
+        if (last >= clearedBefore) {
+            int lastSlot = slot(last);
+            if (published.get(lastSlot) == last && Objects.equals(messages[lastSlot], line.getMessage())) {
                 return this;
             }
         }
         
-        lines.add(line);
-        if (lastLineIndex < 2) {
-            tableModel.fireTableDataChanged();
-        } else {
-            tableModel.fireTableRowsInserted(lastLineIndex, lastLineIndex);
-        }
+        long seq = next.getAndIncrement();
+        int slot = slot(seq);
+
+        published.set(slot, -1);
+        timestamps[slot] = line.getTimestamp();
+        severities[slot] = (byte) line.getLevel().ordinal();
+        servers[slot] = server;
+        messages[slot] = line.getMessage();
+        published.set(slot, seq);
+
+        tableModel.scheduleRefresh();
         
         if (consoleLogging) {
             System.out.println(line);
@@ -105,20 +147,138 @@ public enum LogStorage {
         return add( LogLine.info(message));
     }
 
+    public LogStorage error(String server, String message) {
+        return add(server, LogLine.error(message));
+    }
+    public LogStorage warning(String server, String message) {
+        return add(server, LogLine.warning(message));
+    }
+    public LogStorage info(String server, String message) {
+        return add(server, LogLine.info(message));
+    }
+
+    /**
+     * @return copy of the stored lines, oldest first
+     */
     public List<LogLine> getLines() {
-        return lines;
+        List<LogLine> result = new ArrayList<>();
+        long end = next.get();
+        for (long seq = firstSequence(end); seq < end; seq++) {
+            int slot = slot(seq);
+            // the slot must hold the line before and after reading it
+            if (published.get(slot) != seq) {
+                continue;
+            }
+            long stamp = timestamps[slot];
+            Severity severity = SEVERITIES[severities[slot]];
+            String message = messages[slot];
+            if (published.get(slot) == seq) {
+                result.add(LogLine.create(severity, stamp, message));
+            }
+        }
+        return result;
     }
 
     public LogTableModel getTableModel() {
         return tableModel;
     }
     
+    private int slot(long seq) {
+        return (int) (seq % maxCapacity);
+    }
+
+    private long firstSequence(long end) {
+        return Math.max(clearedBefore, end - maxCapacity);
+    }
     
+    /**
+     * Rows of the table are the sequence numbers of the lines matching the
+     * filter, the lines themselves are read from the ring buffer.
+     */
     public static class LogTableModel extends AbstractTableModel {
 
+        private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+        private final Timer refreshTimer = new Timer(REFRESH_DELAY, e -> refresh());
+        private Set<Severity> severityFilter = EnumSet.allOf(Severity.class);
+        private String serverFilter;
+        private long[] rows = new long[0];
+        private int rowCount;
+
+        public LogTableModel() {
+            refreshTimer.setRepeats(false);
+        }
+
+        private void scheduleRefresh() {
+            if (refreshScheduled.compareAndSet(false, true)) {
+                refreshTimer.restart();
+            }
+        }
+
+        /**
+         * show only lines with one of the given severities, of the given server
+         *
+         * @param severities severities to show
+         * @param server name of the server to show, null for all servers
+         */
+        public void setFilter(Set<Severity> severities, String server) {
+            severityFilter = severities.isEmpty() ? EnumSet.noneOf(Severity.class) : EnumSet.copyOf(severities);
+            serverFilter = server;
+            rowCount = 0;
+            fireTableDataChanged();
+            scheduleRefresh();
+        }
+
+        /**
+         * pick up the lines added since the last refresh, called in the event dispatch thread
+         */
+        private void refresh() {
+            refreshScheduled.set(false);
+
+            LogStorage storage = ALL;
+            long end = storage.next.get();
+            long first = storage.firstSequence(end);
+            int oldCount = rowCount;
+            int keep = 0;
+
+            // rows overwritten in the ring buffer or cleared are gone
+            while (keep < rowCount && rows[keep] < first) {
+                keep++;
+            }
+            long from = rowCount > 0 ? Math.max(first, rows[rowCount - 1] + 1) : first;
+            if (keep > 0) {
+                System.arraycopy(rows, keep, rows, 0, rowCount - keep);
+                rowCount -= keep;
+            }
+
+            for (long seq = from; seq < end; seq++) {
+                int slot = storage.slot(seq);
+                if (storage.published.get(slot) != seq) {
+                    continue; //still being written or already overwritten
+                }
+                if (!severityFilter.contains(SEVERITIES[storage.severities[slot]])) {
+                    continue;
+                }
+                if (serverFilter != null && !serverFilter.equals(storage.servers[slot])) {
+                    continue;
+                }
+                if (rowCount == rows.length) {
+                    long[] newRows = new long[Math.max(16, Math.min(storage.maxCapacity, rows.length * 2))];
+                    System.arraycopy(rows, 0, newRows, 0, rowCount);
+                    rows = newRows;
+                }
+                rows[rowCount++] = seq;
+            }
+
+            if (keep > 0) {
+                fireTableDataChanged();
+            } else if (rowCount > oldCount) {
+                fireTableRowsInserted(oldCount, rowCount - 1);
+            }
+        }
+
         @Override
         public int getRowCount() {
-            return ALL.lines.size();
+            return rowCount;
         }
 
         @Override
@@ -127,6 +287,7 @@ public enum LogStorage {
                 case 0: return "severity";
                 case 1: return "timestamp";
                 case 2: return "message";
+                case 3: return "server";
                 default : return "raw";
             }
         }
@@ -137,6 +298,7 @@ public enum LogStorage {
                 case 0: return Severity.class;
                 case 1: return Long.class;
                 case 2: return String.class;
+                case 3: return String.class;
                 default : return Object.class;
             }
         }
@@ -146,21 +308,28 @@ public enum LogStorage {
         
         @Override
         public int getColumnCount() {
-            return 3;
+            return 4;
         }
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            if (rowIndex < ALL.lines.size()) {
-                LogLine logLine = ALL.lines.get(rowIndex);
-                if (logLine != null) {
-                    switch (columnIndex) {
-                        case 0 : return logLine.getLevel();
-                        case 1 : return logLine.getTimestamp();
-                        case 2 : return logLine.getMessage();
-                        default : return "column " +columnIndex;
-                        
-                    }
+            if (rowIndex < rowCount) {
+                LogStorage storage = ALL;
+                long seq = rows[rowIndex];
+                int slot = storage.slot(seq);
+                if (storage.published.get(slot) != seq) {
+                    return "row " +rowIndex;
+                }
+                Object value;
+                switch (columnIndex) {
+                    case 0 : value = SEVERITIES[storage.severities[slot]]; break;
+                    case 1 : value = storage.timestamps[slot]; break;
+                    case 2 : value = storage.messages[slot]; break;
+                    case 3 : value = storage.servers[slot]; break;
+                    default : return "column " +columnIndex;
+                }
+                if (storage.published.get(slot) == seq) {
+                    return value;
                 }
             }
             return "row " +rowIndex;
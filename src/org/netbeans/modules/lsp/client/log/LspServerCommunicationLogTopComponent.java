@@ -1,6 +1,8 @@
 package org.netbeans.modules.lsp.client.log;
 
 import org.netbeans.api.settings.ConvertAsProperties;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
 import org.openide.windows.TopComponent;
@@ -51,6 +53,8 @@ public final class LspServerCommunicationLogTopComponent extends TopComponent {
         jSeparator1 = new javax.swing.JToolBar.Separator();
         logStateButton = new javax.swing.JToggleButton();
         consoleLogginButton = new javax.swing.JToggleButton();
+        jSeparator2 = new javax.swing.JToolBar.Separator();
+        latencyButton = new javax.swing.JButton();
         jScrollPane2 = new javax.swing.JScrollPane();
         jTable1 = new javax.swing.JTable();
 
@@ -95,6 +99,19 @@ public final class LspServerCommunicationLogTopComponent extends TopComponent {
             }
         });
         jToolBar1.add(consoleLogginButton);
+        jToolBar1.add(jSeparator2);
+
+        org.openide.awt.Mnemonics.setLocalizedText(latencyButton, org.openide.util.NbBundle.getMessage(LspServerCommunicationLogTopComponent.class, "LspServerCommunicationLogTopComponent.latencyButton.text")); // NOI18N
+        latencyButton.setToolTipText(org.openide.util.NbBundle.getMessage(LspServerCommunicationLogTopComponent.class, "LspServerCommunicationLogTopComponent.latencyButton.toolTipText")); // NOI18N
+        latencyButton.setFocusable(false);
+        latencyButton.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        latencyButton.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        latencyButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                latencyButtonActionPerformed(evt);
+            }
+        });
+        jToolBar1.add(latencyButton);
 
         jTable1.setAutoCreateRowSorter(true);
         jTable1.setModel(LogStorage.ALL.getTableModel());
@@ -132,13 +149,25 @@ public final class LspServerCommunicationLogTopComponent extends TopComponent {
         LogStorage.ALL.setConsoleLogging( consoleLogginButton.isSelected());
     }//GEN-LAST:event_consoleLogginButtonItemStateChanged
 
+    @Messages("TITLE_Latencies=LSP Message Latencies")
+    private void latencyButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_latencyButtonActionPerformed
+        javax.swing.JTable table = new javax.swing.JTable(MessageTracer.createStatisticsTableModel());
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        DialogDescriptor dd = new DialogDescriptor(new javax.swing.JScrollPane(table), Bundle.TITLE_Latencies());
+        dd.setOptions(new Object[] {DialogDescriptor.OK_OPTION});
+        DialogDisplayer.getDefault().notify(dd);
+    }//GEN-LAST:event_latencyButtonActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton clearButton;
     private javax.swing.JToggleButton consoleLogginButton;
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JToolBar.Separator jSeparator1;
+    private javax.swing.JToolBar.Separator jSeparator2;
     private javax.swing.JTable jTable1;
     private javax.swing.JToolBar jToolBar1;
+    private javax.swing.JButton latencyButton;
     private javax.swing.JToggleButton logStateButton;
     // End of variables declaration//GEN-END:variables
     @Override
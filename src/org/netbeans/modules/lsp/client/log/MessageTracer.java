@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+
+/**
+ * Traces the JSON-RPC messages exchanged with a server. Requests are paired
+ * with their responses by id, the round trip time is recorded per method in a
+ * {@link LatencyHistogram}, together with the sizes of the messages.
+ *
+ * The tracer is installed into the launcher of a server:
+ * <pre>
+ * MessageTracer.Connection trace = MessageTracer.forServer(name).connect(in, out);
+ * LSPLauncher.createClientLauncher(client, trace.getInputStream(), trace.getOutputStream(), null, trace.getWrapper());
+ * </pre>
+ *
+ * @author ranSprd
+ */
+public final class MessageTracer {
+
+    private static final Map<String, MessageTracer> tracers = new ConcurrentHashMap<>();
+
+    private final String server;
+    private final ConcurrentMap<String, MethodStatistics> method2Statistics = new ConcurrentHashMap<>();
+
+    private MessageTracer(String server) {
+        this.server = server;
+    }
+
+    /**
+     * @return the tracer of the given server, restarted servers continue the statistics
+     */
+    public static MessageTracer forServer(String server) {
+        return tracers.computeIfAbsent(server, MessageTracer::new);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * @return tracing of a new connection to the server
+     */
+    public Connection connect(InputStream in, OutputStream out) {
+        return new Connection(in, out);
+    }
+
+    /** streams and message consumers of one connection to the server */
+    public final class Connection {
+
+        // requests waiting for the response, by direction and id
+        private final ConcurrentMap<String, PendingRequest> pending = new ConcurrentHashMap<>();
+        // bytes written by the current thread, a message is written completely by one thread
+        private final ThreadLocal<long[]> writtenBytes = ThreadLocal.withInitial(() -> new long[1]);
+        private final InputStream in;
+        private final OutputStream out;
+        private long readBytes;
+        private long readBytesAtLastMessage;
+        // frames are only collected when the traffic is recorded
+        private final TraceRecorder recorder = TraceRecorder.getDefault();
+        private final ByteArrayOutputStream readFrame = new ByteArrayOutputStream();
+        private final ThreadLocal<ByteArrayOutputStream> writtenFrame = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+        private Connection(InputStream in, OutputStream out) {
+            this.in = new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int r = super.read();
+                    if (r != -1) {
+                        readBytes++;
+                        if (recorder != null) {
+                            readFrame.write(r);
+                        }
+                    }
+                    return r;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int r = super.read(b, off, len);
+                    if (r > 0) {
+                        readBytes += r;
+                        if (recorder != null) {
+                            readFrame.write(b, off, r);
+                        }
+                    }
+                    return r;
+                }
+            };
+            this.out = new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    writtenBytes.get()[0]++;
+                    if (recorder != null) {
+                        writtenFrame.get().write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    writtenBytes.get()[0] += len;
+                    if (recorder != null) {
+                        writtenFrame.get().write(b, off, len);
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return counting stream, to measure the size of the messages received from the server
+         */
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        /**
+         * @return counting stream, to measure the size of the messages sent to the server
+         */
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        /**
+         * @return wrapper for the message consumers of the launcher, the wrapper
+         * of the outgoing messages is told apart by the consumer writing to the stream
+         */
+        public Function<MessageConsumer, MessageConsumer> getWrapper() {
+            return consumer -> {
+                if (consumer instanceof StreamMessageConsumer) {
+                    return message -> {
+                        long[] written = writtenBytes.get();
+                        long before = written[0];
+                        // registered before sending, the response may arrive before consume returns
+                        PendingRequest request = message instanceof RequestMessage ? sending((RequestMessage) message) : null;
+                        consumer.consume(message);
+                        if (recorder != null) {
+                            ByteArrayOutputStream frame = writtenFrame.get();
+                            recorder.record(server, TraceRecorder.OUT, frame.toByteArray());
+                            frame.reset();
+                        }
+                        if (request != null) {
+                            request.size = written[0] - before;
+                        } else {
+                            sent(message, System.nanoTime(), written[0] - before);
+                        }
+                    };
+                }
+                return message -> {
+                    // messages are read and consumed by a single thread
+                    long size = readBytes - readBytesAtLastMessage;
+                    readBytesAtLastMessage = readBytes;
+                    if (recorder != null) {
+                        recorder.record(server, TraceRecorder.IN, readFrame.toByteArray());
+                        readFrame.reset();
+                    }
+                    received(message, System.nanoTime(), size);
+                    consumer.consume(message);
+                };
+            };
+        }
+
+        private PendingRequest sending(RequestMessage message) {
+            PendingRequest request = new PendingRequest(message.getMethod(), System.nanoTime(), 0);
+            pending.put("out:" + message.getId(), request);
+            return request;
+        }
+
+        private void sent(Message message, long time, long size) {
+            if (message instanceof ResponseMessage) {
+                PendingRequest request = pending.remove("in:" + ((ResponseMessage) message).getId());
+                if (request != null) {
+                    getStatistics(request.method).record(time - request.start, size, request.size);
+                }
+            } else if (message instanceof NotificationMessage) {
+                getStatistics(((NotificationMessage) message).getMethod()).notification(size);
+            }
+        }
+
+        private void received(Message message, long time, long size) {
+            if (message instanceof RequestMessage) {
+                RequestMessage request = (RequestMessage) message;
+                pending.put("in:" + request.getId(), new PendingRequest(request.getMethod(), time, size));
+            } else if (message instanceof ResponseMessage) {
+                PendingRequest request = pending.remove("out:" + ((ResponseMessage) message).getId());
+                if (request != null) {
+                    getStatistics(request.method).record(time - request.start, request.size, size);
+                }
+            } else if (message instanceof NotificationMessage) {
+                getStatistics(((NotificationMessage) message).getMethod()).notification(size);
+            }
+        }
+    }
+
+    private MethodStatistics getStatistics(String method) {
+        return method2Statistics.computeIfAbsent(method != null ? method : "<unknown>", m -> new MethodStatistics());
+    }
+
+    /**
+     * @return statistics by method name
+     */
+    public Map<String, MethodStatistics> getStatistics() {
+        return new TreeMap<>(method2Statistics);
+    }
+
+    /**
+     * @return table with the statistics of all servers, taken when the model is created
+     */
+    public static TableModel createStatisticsTableModel() {
+        List<Object[]> rows = new ArrayList<>();
+
+        for (MessageTracer tracer : new TreeMap<>(tracers).values()) {
+            for (Map.Entry<String, MethodStatistics> e : tracer.getStatistics().entrySet()) {
+                MethodStatistics s = e.getValue();
+                LatencyHistogram l = s.getLatency();
+                rows.add(new Object[] {
+                    tracer.getServer(),
+                    e.getKey(),
+                    s.getMessageCount(),
+                    millis(l.getPercentileNanos(50)),
+                    millis(l.getPercentileNanos(95)),
+                    millis(l.getPercentileNanos(99)),
+                    millis(l.getMaxNanos()),
+                    s.getRequestBytes(),
+                    s.getResponseBytes()
+                });
+            }
+        }
+
+        return new StatisticsTableModel(rows);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    /** traffic of one method */
+    public static final class MethodStatistics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+
+        private void record(long nanos, long requestSize, long responseSize) {
+            latency.record(nanos);
+            messages.add(2);
+            requestBytes.add(requestSize);
+            responseBytes.add(responseSize);
+        }
+
+        private void notification(long size) {
+            messages.increment();
+            requestBytes.add(size);
+        }
+
+        /**
+         * @return round trip times of the requests
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getMessageCount() {
+            return messages.sum();
+        }
+
+        /**
+         * @return bytes of the requests and notifications, in both directions
+         */
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        /**
+         * @return bytes of the responses, in both directions
+         */
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+    }
+
+    private static final class PendingRequest {
+
+        private final String method;
+        private final long start;
+        private volatile long size;
+
+        public PendingRequest(String method, long start, long size) {
+            this.method = method;
+            this.start = start;
+            this.size = size;
+        }
+
+    }
+
+    private static final class StatisticsTableModel extends AbstractTableModel {
+
+        private static final String[] COLUMNS = {"server", "method", "messages", "p50 ms", "p95 ms", "p99 ms", "max ms", "request bytes", "response bytes"};
+        private static final Class<?>[] COLUMN_CLASSES = {String.class, String.class, Long.class, Double.class, Double.class, Double.class, Double.class, Long.class, Long.class};
+
+        private final List<Object[]> rows;
+
+        public StatisticsTableModel(List<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return COLUMN_CLASSES[columnIndex];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return rows.get(rowIndex)[columnIndex];
+        }
+
+    }
+}
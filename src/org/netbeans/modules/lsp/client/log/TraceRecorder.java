@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.lsp.client.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.openide.modules.OnStop;
+import org.openide.modules.Places;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Records the JSON-RPC frames exchanged with the servers into memory mapped
+ * segment files in {@code var/log/lsp-trace} of the user directory, so the
+ * traffic before a server hang or crash can be analyzed afterwards. Frames
+ * are handed over to a single writer thread, if the writer falls behind by
+ * more than 64 MB frames are dropped instead of blocking the connection. When
+ * a segment is full the next one is started, only the newest segments are
+ * kept.
+ *
+ * Recording is enabled with {@code -J-Dorg.netbeans.modules.lsp.client.trace.record=true},
+ * segments are read with {@link #read(java.io.File, java.util.function.Consumer) }.
+ *
+ * Record layout: {@code int length, long timestamp, byte direction,
+ * short server length, server (UTF-8), frame bytes}, a length of 0 ends the
+ * segment.
+ *
+ * @author ranSprd
+ */
+public final class TraceRecorder {
+
+    private static final String ENABLED_PROPERTY = "org.netbeans.modules.lsp.client.trace.record";
+    private static final Logger LOG = Logger.getLogger(TraceRecorder.class.getName());
+    private static final RequestProcessor WRITER = new RequestProcessor(TraceRecorder.class.getName(), 1, false, false);
+
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 8;
+    // frames of didOpen or full document syncs may have megabytes
+    private static final long MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "trace-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_SIZE = 4 + 8 + 1 + 2;
+
+    public static final byte IN = 0;
+    public static final byte OUT = 1;
+
+    private static TraceRecorder instance;
+
+    private final File dir;
+    private final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    // accessed only by the writer
+    private final String session = Long.toString(System.currentTimeMillis());
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+
+    private TraceRecorder(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the recorder, null if recording is disabled
+     */
+    public static synchronized TraceRecorder getDefault() {
+        if (instance == null && Boolean.getBoolean(ENABLED_PROPERTY)) {
+            instance = new TraceRecorder(getTraceDirectory());
+        }
+        return instance;
+    }
+
+    /**
+     * @return directory with the segment files
+     */
+    public static File getTraceDirectory() {
+        File userDir = Places.getUserDirectory();
+        File base = userDir != null ? new File(userDir, "var/log") : new File(System.getProperty("java.io.tmpdir"));
+        return new File(base, "lsp-trace");
+    }
+
+    /**
+     * queue the frame for writing, never blocks
+     *
+     * @param direction {@link #IN} or {@link #OUT}
+     */
+    public void record(String server, byte direction, byte[] frame) {
+        if (queuedBytes.addAndGet(frame.length) > MAX_QUEUED_BYTES) {
+            queuedBytes.addAndGet(-frame.length);
+            dropped.increment();
+            return ;
+        }
+        queue.add(new Frame(System.currentTimeMillis(), direction, server, frame));
+        if (writing.compareAndSet(false, true)) {
+            WRITER.post(this::drain);
+        }
+    }
+
+    /**
+     * @return number of frames not recorded, because the writer was behind
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * write the queued frames and force the current segment to disk, waits at most the given time
+     */
+    void flush(long timeoutMillis) throws InterruptedException {
+        WRITER.post(() -> {
+            drain();
+            if (segment != null) {
+                segment.force();
+            }
+        }).waitFinished(timeoutMillis);
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            while ((frame = queue.poll()) != null) {
+                queuedBytes.addAndGet(-frame.data.length);
+                try {
+                    write(frame);
+                } catch (IOException ex) {
+                    LOG.log(Level.FINE, null, ex);
+                }
+            }
+            writing.set(false);
+            if (queue.isEmpty() || !writing.compareAndSet(false, true)) {
+                return ;
+            }
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        byte[] server = frame.server.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + server.length + frame.data.length;
+
+        if (length + 4 > SEGMENT_SIZE) {
+            dropped.increment();
+            return ;
+        }
+        if (segment == null || segment.remaining() < length + 4) {
+            nextSegment();
+        }
+        segment.putInt(length);
+        segment.putLong(frame.timestamp);
+        segment.put(frame.direction);
+        segment.putShort((short) server.length);
+        segment.put(server);
+        segment.put(frame.data);
+    }
+
+    private void nextSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, SEGMENT_PREFIX + session + "-" + (segmentIndex++) + SEGMENT_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+        List<File> segments = getSegments(dir);
+        for (int i = 0; i < segments.size() - MAX_SEGMENTS; i++) {
+            segments.get(i).delete();
+        }
+    }
+
+    /**
+     * @return the segment files in the given directory, oldest first
+     */
+    public static List<File> getSegments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (f1, f2) -> {
+            int c = Long.compare(f1.lastModified(), f2.lastModified());
+            return c != 0 ? c : f1.getName().compareTo(f2.getName());
+        });
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * pass all frames of the segment to the consumer, in the order they were recorded
+     */
+    public static void read(File segmentFile, Consumer<Frame> consumer) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFile, "r")) {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            try {
+                while (buffer.remaining() >= 4) {
+                    int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() + 4) {
+                        break;
+                    }
+                    long timestamp = buffer.getLong();
+                    byte direction = buffer.get();
+                    byte[] server = new byte[buffer.getShort()];
+                    buffer.get(server);
+                    byte[] data = new byte[length - HEADER_SIZE - server.length];
+                    buffer.get(data);
+                    consumer.accept(new Frame(timestamp, direction, new String(server, StandardCharsets.UTF_8), data));
+                }
+            } catch (BufferUnderflowException ex) {
+                //truncated record at the end of the segment
+                LOG.log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * @return frames of all segments in the given directory matching the pattern, oldest first
+     */
+    public static List<Frame> grep(File dir, Pattern pattern) throws IOException {
+        List<Frame> result = new ArrayList<>();
+        for (File segmentFile : getSegments(dir)) {
+            read(segmentFile, frame -> {
+                if (pattern.matcher(frame.getText()).find()) {
+                    result.add(frame);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * the tail of the last segment is written back when the IDE exits, not
+     * whenever the system decides to
+     */
+    @OnStop
+    public static class Shutdown implements Runnable {
+
+        private static final long TIMEOUT = 2000;
+
+        @Override
+        public void run() {
+            TraceRecorder recorder;
+
+            synchronized (TraceRecorder.class) {
+                recorder = instance;
+            }
+
+            if (recorder != null) {
+                try {
+                    recorder.flush(TIMEOUT);
+                } catch (InterruptedException ex) {
+                    LOG.log(Level.FINE, null, ex);
+                }
+            }
+        }
+    }
+
+    /** one recorded JSON-RPC frame, including the header */
+    public static final class Frame {
+
+        private final long timestamp;
+        private final byte direction;
+        private final String server;
+        private final byte[] data;
+
+        private Frame(long timestamp, byte direction, String server, byte[] data) {
+            this.timestamp = timestamp;
+            this.direction = direction;
+            this.server = server;
+            this.data = data;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return {@link #IN} for frames received from the server, {@link #OUT} for frames sent to it
+         */
+        public byte getDirection() {
+            return direction;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        public String getText() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + " " + (direction == IN ? "<- " : "-> ") + server + " " + getText();
+        }
+    }
+}
@@ -34,6 +34,8 @@ import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.SignatureHelpOptions;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
 import org.eclipse.lsp4j.TextDocumentSyncOptions;
+import org.eclipse.lsp4j.WorkspaceFoldersOptions;
+import org.eclipse.lsp4j.WorkspaceServerCapabilities;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.netbeans.modules.lsp.client.Utils;
 
@@ -163,6 +165,23 @@ public class LSPServerCapabilities {
         return serverCapabilities.getSemanticTokensProvider();
     }
 
+    /**
+     * The server supports several workspace folders and is notified about
+     * added and removed folders.
+     */
+    public boolean hasWorkspaceFoldersSupport() {
+        WorkspaceServerCapabilities workspace = serverCapabilities.getWorkspace();
+        WorkspaceFoldersOptions folders = workspace != null ? workspace.getWorkspaceFolders() : null;
+
+        if (folders == null || !Utils.isTrue(folders.getSupported())) {
+            return false;
+        }
+
+        Either<String, Boolean> notifications = folders.getChangeNotifications();
+
+        return notifications != null && (notifications.isLeft() || Utils.isTrue(notifications.getRight()));
+    }
+
     
     
 
@@ -40,7 +40,7 @@ import org.openide.util.RequestProcessor;
  *
  * @author jlahoda
  */
-public class GenericLanguageServer implements LanguageServerProvider {
+public class GenericLanguageServer implements LanguageServerProvider.ProjectIndependent {
 
     private final RequestProcessor WORKER = new RequestProcessor(GenericLanguageServer.class.getName(), Integer.MAX_VALUE, false, false);
     private static final long STARTUP_DELAY = 10000;
@@ -104,7 +104,7 @@ public class GenericLanguageServer implements LanguageServerProvider {
         }
 
         try {
-            InputOutput io = InputOutput.get("Language Server for " + name + " for project " + (prj != null ? ProjectUtils.getInformation(prj).getDisplayName() : "<unknown>"), false);
+            InputOutput io = InputOutput.get("Language Server for " + name + (prj != null ? " for project " + ProjectUtils.getInformation(prj).getDisplayName() : ""), false);
             io.reset();
             Process process = new ProcessBuilder(command).start();
             WORKER.post(() -> {
@@ -36,6 +36,7 @@ import java.util.stream.Collectors;
 import javax.swing.event.ChangeEvent;
 import org.eclipse.tm4e.core.registry.IRegistryOptions;
 import org.eclipse.tm4e.core.registry.Registry;
+import org.netbeans.modules.lsp.client.LSPBindingFactory;
 import org.netbeans.modules.textmate.lexer.TextmateTokenId;
 import org.netbeans.spi.navigator.NavigatorPanel;
 import org.openide.filesystems.FileObject;
@@ -184,6 +185,7 @@ public class LanguageStorage {
             Method resetCache = Class.forName("org.openide.filesystems.MIMESupport").getDeclaredMethod("resetCache");
             resetCache.setAccessible(true);
             resetCache.invoke(null);
+            LSPBindingFactory.invalidateRouting();
 
             GenericDataObject.invalidate();
 
@@ -43,6 +43,14 @@ public interface LanguageServerProvider {
      */
     public @CheckForNull LanguageServerDescription startServer(@NonNull Lookup lookup);
 
+    /**
+     * Marks a provider whose servers do not depend on the project in the
+     * {@code lookup}. Such a server may be started ahead of time, without a
+     * project, and handed to any project the provider is asked for.
+     */
+    public interface ProjectIndependent extends LanguageServerProvider {
+    }
+
     /**
      * A description of a running language server.
      */